@@ -6,6 +6,8 @@ USE payment_db;
 -- Create user
 CREATE USER IF NOT EXISTS 'payment_user'@'%' IDENTIFIED BY 'payment_pass';
 GRANT ALL PRIVILEGES ON payment_db.* TO 'payment_user'@'%';
+-- Needed by the Debezium outbox publisher (payment.outbox.relay-mode=cdc)
+GRANT SELECT, RELOAD, SHOW DATABASES, REPLICATION SLAVE, REPLICATION CLIENT ON *.* TO 'payment_user'@'%';
 FLUSH PRIVILEGES;
 
 -- Account master table
@@ -37,6 +39,19 @@ CREATE TABLE balances (
     FOREIGN KEY (account_id) REFERENCES account_mst(account_id)
 );
 
+-- Credit stripes for hot destination accounts (book = balances.book + SUM(slots.book))
+CREATE TABLE balance_slots (
+    account_id VARCHAR(20) NOT NULL,
+    slot INT NOT NULL,
+    book DECIMAL(15,2) NOT NULL DEFAULT 0.00,
+    version BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (account_id, slot),
+    CONSTRAINT chk_slot_book_positive CHECK (book >= 0),
+    FOREIGN KEY (account_id) REFERENCES account_mst(account_id)
+);
+
 -- Ledger entries table
 CREATE TABLE ledger_entries (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -53,6 +68,7 @@ CREATE TABLE ledger_entries (
     INDEX idx_tx_id (tx_id),
     INDEX idx_status (status),
     INDEX idx_leg_type_status (leg_type, status),
+    INDEX idx_account_leg_status (account_id, leg_type, status),
     FOREIGN KEY (account_id) REFERENCES account_mst(account_id)
 );
 
@@ -61,7 +77,9 @@ CREATE TABLE outbox (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     tx_id VARCHAR(50) NOT NULL,
     event_type VARCHAR(50) NOT NULL,
-    payload JSON NOT NULL,
+    payload JSON NULL,
+    -- Set instead of payload when events are written with the binary codec
+    payload_bytes VARBINARY(2048) NULL,
     partition_key VARCHAR(50) NOT NULL,
     processed BOOLEAN NOT NULL DEFAULT FALSE,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -72,6 +90,35 @@ CREATE TABLE outbox (
     INDEX idx_partition_key (partition_key)
 );
 
+-- Hold totals written back to balances by the hot-account hold engine
+CREATE TABLE hold_engine_checkpoints (
+    account_id VARCHAR(20) PRIMARY KEY,
+    ledger_id BIGINT NOT NULL DEFAULT 0,
+    applied_hold_total DECIMAL(19,2) NOT NULL DEFAULT 0.00,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    FOREIGN KEY (account_id) REFERENCES account_mst(account_id)
+);
+
+-- Last ledger.* offset the balance projector applied, per account and source partition
+CREATE TABLE projection_checkpoints (
+    account_id VARCHAR(20) NOT NULL,
+    topic VARCHAR(100) NOT NULL,
+    partition_id INT NOT NULL,
+    applied_offset BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (account_id, topic, partition_id),
+    FOREIGN KEY (account_id) REFERENCES account_mst(account_id)
+);
+
+-- Ledger id up to which the reconciler has settled every HOLD
+CREATE TABLE reconciler_checkpoints (
+    name VARCHAR(50) PRIMARY KEY,
+    last_id BIGINT NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
 -- Idempotency keys table
 CREATE TABLE idempotency_keys (
     tx_id VARCHAR(50) PRIMARY KEY,
@@ -0,0 +1,83 @@
+package paymentapp.payment.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Folding a batch of balance events in memory, with the same guards as the
+// projector: BigDecimal as in BalanceProjector, long cents as in HotAccountHoldEngine
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BalanceMathBenchmark {
+    
+    @Param({"100"})
+    public int batchSize;
+    
+    private BigDecimal[] amounts;
+    private long[] cents;
+    private boolean[] holds;
+    
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        amounts = new BigDecimal[batchSize];
+        cents = new long[batchSize];
+        holds = new boolean[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            cents[i] = 1 + random.nextInt(1_000_000);
+            amounts[i] = BigDecimal.valueOf(cents[i], 2);
+            holds[i] = random.nextBoolean();
+        }
+    }
+    
+    @Benchmark
+    public BigDecimal foldBigDecimal() {
+        BigDecimal available = new BigDecimal("50000000.00");
+        BigDecimal openHold = BigDecimal.ZERO;
+        for (int i = 0; i < batchSize; i++) {
+            BigDecimal amount = amounts[i];
+            if (holds[i]) {
+                if (available.compareTo(amount) >= 0) {
+                    available = available.subtract(amount);
+                    openHold = openHold.add(amount);
+                }
+            } else if (openHold.compareTo(amount) >= 0) {
+                openHold = openHold.subtract(amount);
+            }
+        }
+        return available.subtract(openHold);
+    }
+    
+    @Benchmark
+    public long foldCents() {
+        long available = 5_000_000_000L;
+        long openHold = 0;
+        for (int i = 0; i < batchSize; i++) {
+            long amount = cents[i];
+            if (holds[i]) {
+                if (available >= amount) {
+                    available -= amount;
+                    openHold += amount;
+                }
+            } else if (openHold >= amount) {
+                openHold -= amount;
+            }
+        }
+        return available - openHold;
+    }
+    
+    @Benchmark
+    public long toCents() {
+        long total = 0;
+        for (BigDecimal amount : amounts) {
+            total += amount.movePointRight(2).longValueExact();
+        }
+        return total;
+    }
+}
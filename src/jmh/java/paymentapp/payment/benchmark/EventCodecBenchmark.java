@@ -0,0 +1,109 @@
+package paymentapp.payment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import paymentapp.payment.codec.EventDeserializer;
+import paymentapp.payment.codec.EventSerializer;
+import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.event.TransferHeldEvent;
+import paymentapp.payment.service.OutboxEventFactory;
+import paymentapp.payment.service.OutboxPublisher;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Event serde on the transfer path, per codec: workers encode into the outbox,
+// the relay turns the stored row into the record value, consumers decode it.
+// The record size of each codec is reported with the relay benchmark, as its
+// relay:bytesPerRecord secondary result.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventCodecBenchmark {
+    
+    private static final String TOPIC = "transfer.held";
+    
+    @Param({"json", "binary"})
+    public String codec;
+    
+    private OutboxEventFactory outboxEventFactory;
+    private OutboxPublisher outboxPublisher;
+    private EventSerializer serializer;
+    private EventDeserializer deserializer;
+    private JsonSerializer<Object> jsonSerializer;
+    private TransferHeldEvent event;
+    private OutboxEvent stored;
+    private String jsonPayload;
+    private Headers headers;
+    private byte[] record;
+    
+    @Setup
+    public void setup() throws Exception {
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        outboxEventFactory = new OutboxEventFactory(objectMapper, codec);
+        outboxPublisher = new OutboxPublisher(null, objectMapper);
+        serializer = new EventSerializer();
+        serializer.configure(Map.of(EventSerializer.CODEC_CONFIG, codec), false);
+        deserializer = new EventDeserializer();
+        deserializer.configure(Map.of(
+            JsonDeserializer.TRUSTED_PACKAGES, "paymentapp.payment.event",
+            JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false), false);
+        jsonSerializer = new JsonSerializer<>();
+        
+        event = new TransferHeldEvent();
+        event.setTxId("TX-5f0c6a4e-8d1b-4c1e-9a57-2b8f3d9e7c10");
+        event.setSourceAccount("ACC001");
+        event.setDestinationAccount("ACC002");
+        event.setAmount(new BigDecimal("1234.56"));
+        event.setTimestamp(System.currentTimeMillis());
+        jsonPayload = objectMapper.writeValueAsString(event);
+        
+        stored = outboxEventFactory.create(event.getTxId(), TOPIC, event, event.getDestinationAccount());
+        ProducerRecord<String, Object> relayed = outboxPublisher.toRecord(stored);
+        headers = relayed.headers();
+        record = serializer.serialize(TOPIC, headers, relayed.value());
+    }
+    
+    @Benchmark
+    public OutboxEvent createOutboxEvent() throws Exception {
+        return outboxEventFactory.create(event.getTxId(), TOPIC, event, event.getDestinationAccount());
+    }
+    
+    @Benchmark
+    public byte[] relay(RecordSize size) throws Exception {
+        ProducerRecord<String, Object> relayed = outboxPublisher.toRecord(stored);
+        byte[] value = serializer.serialize(TOPIC, relayed.headers(), relayed.value());
+        size.bytesPerRecord = value.length;
+        return value;
+    }
+    
+    // The relay before stored payloads were passed through: parse the JSON and
+    // let JsonSerializer rebuild it
+    @Benchmark
+    public byte[] reparse() throws Exception {
+        return jsonSerializer.serialize(TOPIC, new RecordHeaders(),
+            outboxPublisher.convertPayloadToEvent(TOPIC, jsonPayload));
+    }
+    
+    @Benchmark
+    public Object consume() {
+        return deserializer.deserialize(TOPIC, headers, record);
+    }
+    
+    // Set, not summed, so the counter reads as the size of one record
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RecordSize {
+        public long bytesPerRecord;
+    }
+}
@@ -0,0 +1,118 @@
+package paymentapp.payment.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import paymentapp.payment.cache.LocalIdempotencyCache;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// The idempotency path of PaymentService against H2 in MySQL mode: a first
+// request claims its key with one insert, a retry finds the key taken, fails
+// to take it over and reads the stored response. The SQL is the native SQL of
+// IdempotencyKeyRepository.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdempotencyClaimBenchmark {
+    
+    private static final int EXISTING_KEYS = 100_000;
+    private static final String RESPONSE = "{\"txId\":\"TX-1\",\"status\":\"PENDING\",\"message\":\"Transfer initiated\"}";
+    
+    private Connection connection;
+    private PreparedStatement insertIfAbsent;
+    private PreparedStatement replaceStale;
+    private PreparedStatement findResponse;
+    private LocalIdempotencyCache idempotencyCache;
+    private long nextKey;
+    private int nextExisting;
+    
+    @Setup
+    public void setup() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:idempotency;MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE idempotency_keys (" +
+                "tx_id VARCHAR(50) PRIMARY KEY, " +
+                "request_hash VARCHAR(64), " +
+                "status VARCHAR(10) NOT NULL DEFAULT 'PENDING', " +
+                "response VARCHAR(1000), " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "expires_at TIMESTAMP NOT NULL)");
+            statement.execute("CREATE INDEX idx_expires_at ON idempotency_keys (expires_at)");
+        }
+        
+        insertIfAbsent = connection.prepareStatement(
+            "INSERT IGNORE INTO idempotency_keys (tx_id, status, response, created_at, expires_at) " +
+            "VALUES (?, 'SUCCESS', ?, ?, ?)");
+        replaceStale = connection.prepareStatement(
+            "UPDATE idempotency_keys SET status = 'SUCCESS', response = ?, created_at = ?, expires_at = ? " +
+            "WHERE tx_id = ? AND (expires_at <= ? OR status = 'FAILED')");
+        findResponse = connection.prepareStatement(
+            "SELECT response FROM idempotency_keys WHERE tx_id = ?");
+        
+        idempotencyCache = new LocalIdempotencyCache(600_000, EXISTING_KEYS);
+        for (int i = 0; i < EXISTING_KEYS; i++) {
+            claim("existing-" + i);
+            idempotencyCache.put("existing-" + i, RESPONSE);
+        }
+    }
+    
+    @TearDown
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+    
+    @Benchmark
+    public int claimNewKey() throws Exception {
+        return claim("new-" + nextKey++);
+    }
+    
+    @Benchmark
+    public String replayExistingKey() throws Exception {
+        String key = nextExistingKey();
+        if (claim(key) > 0) {
+            return RESPONSE;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        replaceStale.setString(1, RESPONSE);
+        replaceStale.setTimestamp(2, Timestamp.valueOf(now));
+        replaceStale.setTimestamp(3, Timestamp.valueOf(now.plusHours(24)));
+        replaceStale.setString(4, key);
+        replaceStale.setTimestamp(5, Timestamp.valueOf(now));
+        if (replaceStale.executeUpdate() > 0) {
+            return RESPONSE;
+        }
+        findResponse.setString(1, key);
+        try (ResultSet resultSet = findResponse.executeQuery()) {
+            return resultSet.next() ? resultSet.getString(1) : null;
+        }
+    }
+    
+    @Benchmark
+    public Optional<String> replayFromCache() {
+        return idempotencyCache.get(nextExistingKey());
+    }
+    
+    private int claim(String key) throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        insertIfAbsent.setString(1, key);
+        insertIfAbsent.setString(2, RESPONSE);
+        insertIfAbsent.setTimestamp(3, Timestamp.valueOf(now));
+        insertIfAbsent.setTimestamp(4, Timestamp.valueOf(now.plusHours(24)));
+        return insertIfAbsent.executeUpdate();
+    }
+    
+    private String nextExistingKey() {
+        nextExisting = (nextExisting + 7919) % EXISTING_KEYS;
+        return "existing-" + nextExisting;
+    }
+}
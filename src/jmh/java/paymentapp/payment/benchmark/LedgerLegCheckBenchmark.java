@@ -0,0 +1,153 @@
+package paymentapp.payment.benchmark;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+import paymentapp.payment.entity.LedgerEntry;
+import paymentapp.payment.repository.LedgerEntryRepository;
+import paymentapp.payment.service.LedgerLegVerifier;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+// The projector's check that a ledger leg exists, against H2 in MySQL mode and
+// through Hibernate, as the repositories run them: loading every leg of the
+// transaction as entities and filtering in Java (findByTxIdOrderByCreatedAt,
+// the check before LedgerLegVerifier), the existsBy probe on the unique key,
+// and the verifier itself, whose cache holds half of the transactions in the
+// table. The persistence context is cleared after each check, as the end of
+// the projector's transaction would.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LedgerLegCheckBenchmark {
+    
+    private static final int TRANSACTIONS = 20_000;
+    private static final String[] LEGS = {"HOLD", "CREDIT", "DEBIT", "RELEASE"};
+    
+    private static final String URL = "jdbc:h2:mem:ledger;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    
+    private Connection connection;
+    private SessionFactory sessionFactory;
+    private EntityManager entityManager;
+    private LedgerLegVerifier ledgerLegVerifier;
+    private int next;
+    
+    @Setup
+    public void setup() throws Exception {
+        connection = DriverManager.getConnection(URL);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE ledger_entries (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "tx_id VARCHAR(50) NOT NULL, " +
+                "account_id VARCHAR(20) NOT NULL, " +
+                "leg_type VARCHAR(10) NOT NULL, " +
+                "amount DECIMAL(15,2) NOT NULL, " +
+                "status VARCHAR(10) NOT NULL, " +
+                "description VARCHAR(255), " +
+                "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "CONSTRAINT uk_tx_account_leg UNIQUE (tx_id, account_id, leg_type))");
+            statement.execute("CREATE INDEX idx_tx_id ON ledger_entries (tx_id)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO ledger_entries (tx_id, account_id, leg_type, amount, status, description) " +
+                "VALUES (?, ?, ?, 100.00, 'SUCCESS', 'benchmark')")) {
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                for (String leg : LEGS) {
+                    insert.setString(1, "TX-" + i);
+                    insert.setString(2, "CREDIT".equals(leg) ? "ACC002" : "ACC001");
+                    insert.setString(3, leg);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        }
+        
+        sessionFactory = new Configuration()
+            .addAnnotatedClass(LedgerEntry.class)
+            .setProperty(AvailableSettings.JAKARTA_JDBC_URL, URL)
+            .setProperty(AvailableSettings.HBM2DDL_AUTO, "none")
+            .buildSessionFactory();
+        entityManager = sessionFactory.createEntityManager();
+        
+        LedgerEntryRepository repository = (LedgerEntryRepository) Proxy.newProxyInstance(
+            LedgerEntryRepository.class.getClassLoader(),
+            new Class<?>[] {LedgerEntryRepository.class},
+            (proxy, method, args) -> {
+                if (!method.getName().equals("existsByTxIdAndAccountIdAndLegTypeAndStatus")) {
+                    throw new UnsupportedOperationException(method.getName());
+                }
+                return probe((String) args[0], (String) args[1],
+                    (LedgerEntry.LegType) args[2], (LedgerEntry.TransactionStatus) args[3]);
+            });
+        ledgerLegVerifier = new LedgerLegVerifier(repository, TRANSACTIONS / 2);
+    }
+    
+    @TearDown
+    public void tearDown() throws Exception {
+        entityManager.close();
+        sessionFactory.close();
+        connection.close();
+    }
+    
+    @Benchmark
+    public boolean loadAndFilter() {
+        // The query Spring Data derives for findByTxIdOrderByCreatedAt
+        try {
+            return entityManager.createQuery(
+                    "SELECT l FROM LedgerEntry l WHERE l.txId = :txId ORDER BY l.createdAt", LedgerEntry.class)
+                .setParameter("txId", nextTxId())
+                .getResultList()
+                .stream()
+                .anyMatch(entry -> entry.getAccountId().equals("ACC002")
+                        && entry.getLegType() == LedgerEntry.LegType.CREDIT
+                        && entry.getStatus() == LedgerEntry.TransactionStatus.SUCCESS);
+        } finally {
+            entityManager.clear();
+        }
+    }
+    
+    @Benchmark
+    public boolean indexProbe() {
+        return probe(nextTxId(), "ACC002", LedgerEntry.LegType.CREDIT, LedgerEntry.TransactionStatus.SUCCESS);
+    }
+    
+    @Benchmark
+    public boolean verifier() {
+        return ledgerLegVerifier.exists(nextTxId(), "ACC002",
+            LedgerEntry.LegType.CREDIT, LedgerEntry.TransactionStatus.SUCCESS);
+    }
+    
+    // The query Spring Data derives for existsByTxIdAndAccountIdAndLegTypeAndStatus
+    private boolean probe(String txId, String accountId, LedgerEntry.LegType legType,
+            LedgerEntry.TransactionStatus status) {
+        try {
+            return !entityManager.createQuery(
+                    "SELECT l.id FROM LedgerEntry l WHERE l.txId = :txId AND l.accountId = :accountId " +
+                    "AND l.legType = :legType AND l.status = :status", Long.class)
+                .setParameter("txId", txId)
+                .setParameter("accountId", accountId)
+                .setParameter("legType", legType)
+                .setParameter("status", status)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+        } finally {
+            entityManager.clear();
+        }
+    }
+    
+    private String nextTxId() {
+        next = (next + 7919) % TRANSACTIONS;
+        return "TX-" + next;
+    }
+}
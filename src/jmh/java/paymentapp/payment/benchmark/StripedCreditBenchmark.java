@@ -0,0 +1,102 @@
+package paymentapp.payment.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Credits per second to one destination account from concurrent writers,
+// against H2 in MySQL mode: every credit on the balances row, or spread over
+// balance_slots rows as StripedBalanceService does. H2 holds row locks for a
+// much shorter time than MySQL, so only the ratio between the two is meaningful.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class StripedCreditBenchmark {
+    
+    private static final String URL = "jdbc:h2:mem:striping;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private static final String ACCOUNT = "ACC002";
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+    
+    @State(Scope.Benchmark)
+    public static class Schema {
+        
+        @Param({"8"})
+        public int slots;
+        
+        private Connection connection;
+        
+        @Setup
+        public void setup() throws Exception {
+            connection = DriverManager.getConnection(URL);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE balances (" +
+                    "account_id VARCHAR(20) PRIMARY KEY, " +
+                    "book DECIMAL(15,2) NOT NULL DEFAULT 0.00, " +
+                    "version BIGINT NOT NULL DEFAULT 0)");
+                statement.execute("CREATE TABLE balance_slots (" +
+                    "account_id VARCHAR(20) NOT NULL, " +
+                    "slot INT NOT NULL, " +
+                    "book DECIMAL(15,2) NOT NULL DEFAULT 0.00, " +
+                    "version BIGINT NOT NULL DEFAULT 0, " +
+                    "PRIMARY KEY (account_id, slot))");
+                statement.execute("INSERT INTO balances (account_id) VALUES ('" + ACCOUNT + "')");
+            }
+        }
+        
+        @TearDown
+        public void tearDown() throws Exception {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+            }
+            connection.close();
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Writer {
+        
+        private Connection connection;
+        private PreparedStatement creditBalance;
+        private PreparedStatement creditSlot;
+        
+        @Setup
+        public void setup(Schema schema) throws Exception {
+            connection = DriverManager.getConnection(URL);
+            creditBalance = connection.prepareStatement(
+                "UPDATE balances SET book = book + ?, version = version + 1 WHERE account_id = ?");
+            creditSlot = connection.prepareStatement(
+                "INSERT INTO balance_slots (account_id, slot, book, version) VALUES (?, ?, ?, 1) " +
+                "ON DUPLICATE KEY UPDATE book = book + VALUES(book), version = version + 1");
+        }
+        
+        @TearDown
+        public void tearDown() throws Exception {
+            connection.close();
+        }
+    }
+    
+    @Benchmark
+    public int singleRow(Writer writer) throws Exception {
+        writer.creditBalance.setBigDecimal(1, AMOUNT);
+        writer.creditBalance.setString(2, ACCOUNT);
+        return writer.creditBalance.executeUpdate();
+    }
+    
+    @Benchmark
+    public int striped(Schema schema, Writer writer) throws Exception {
+        // Transaction ids hash uniformly, so a random slot stands in for slotFor(txId)
+        writer.creditSlot.setString(1, ACCOUNT);
+        writer.creditSlot.setInt(2, ThreadLocalRandom.current().nextInt(schema.slots));
+        writer.creditSlot.setBigDecimal(3, AMOUNT);
+        return writer.creditSlot.executeUpdate();
+    }
+}
@@ -0,0 +1,60 @@
+package paymentapp.payment.benchmark;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import paymentapp.payment.dto.TransferRequest;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Bean validation of the request body, as done for @Valid on POST /transfers
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferRequestValidationBenchmark {
+    
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private TransferRequest validRequest;
+    private TransferRequest invalidRequest;
+    
+    @Setup
+    public void setup() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        
+        validRequest = new TransferRequest();
+        validRequest.setSourceAccount("ACC001");
+        validRequest.setDestinationAccount("ACC002");
+        validRequest.setAmount(new BigDecimal("250.00"));
+        validRequest.setDescription("Invoice 2024-117");
+        validRequest.setIdempotencyKey("idem-5f0c6a4e-8d1b-4c1e-9a57-2b8f3d9e7c10");
+        
+        invalidRequest = new TransferRequest();
+        invalidRequest.setSourceAccount("");
+        invalidRequest.setDestinationAccount("ACC002-WITH-A-FAR-TOO-LONG-ID");
+        invalidRequest.setAmount(new BigDecimal("0.00"));
+    }
+    
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+    
+    @Benchmark
+    public Set<ConstraintViolation<TransferRequest>> validRequest() {
+        return validator.validate(validRequest);
+    }
+    
+    @Benchmark
+    public Set<ConstraintViolation<TransferRequest>> invalidRequest() {
+        return validator.validate(invalidRequest);
+    }
+}
@@ -0,0 +1,128 @@
+package paymentapp.payment.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.entity.OutboxEvent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Archived outbox rows as gzip-compressed JSON lines, one file per archived
+// chunk: <directory>/shard-<n>/outbox-<first created_at>-<last created_at>-<first id>.jsonl.gz
+// The time range in the name lets a replay skip files without opening them.
+@Component
+@Slf4j
+public class OutboxArchiveStore {
+    
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final String PREFIX = "outbox-";
+    private static final String SUFFIX = ".jsonl.gz";
+    
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    
+    // No default: archived rows are gone from the outbox, so the directory has
+    // to be chosen as durable storage rather than fall back to a temp dir
+    public OutboxArchiveStore(ObjectMapper objectMapper,
+            @Value("${payment.outbox.archive.directory:}") String directory) {
+        this.objectMapper = objectMapper;
+        this.directory = directory.isBlank() ? null : Paths.get(directory);
+    }
+    
+    public boolean isConfigured() {
+        return directory != null;
+    }
+    
+    // Written to a temporary file and moved into place, so a crash never leaves
+    // a truncated archive under a final name. Events must be ordered by created_at.
+    public Path write(int shard, List<OutboxEvent> events) throws IOException {
+        if (directory == null) {
+            throw new IllegalStateException("payment.outbox.archive.directory is not set");
+        }
+        OutboxEvent first = events.get(0);
+        OutboxEvent last = events.get(events.size() - 1);
+        Path shardDirectory = Files.createDirectories(directory.resolve("shard-" + shard));
+        Path target = shardDirectory.resolve(PREFIX + FILE_TIME.format(first.getCreatedAt()) + "-"
+            + FILE_TIME.format(last.getCreatedAt()) + "-" + first.getId() + SUFFIX);
+        Path temp = Files.createTempFile(shardDirectory, "outbox-", ".tmp");
+        
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+            for (OutboxEvent event : events) {
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+    
+    // Streams every archived event created in [from, to), across all shards
+    public void read(LocalDateTime from, LocalDateTime to, Consumer<OutboxEvent> consumer) throws IOException {
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory, 2)) {
+            files = paths
+                .filter(path -> isArchive(path) && overlaps(path, from, to))
+                .sorted()
+                .toList();
+        }
+        
+        for (Path file : files) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    OutboxEvent event = objectMapper.readValue(line, OutboxEvent.class);
+                    if (!event.getCreatedAt().isBefore(from) && event.getCreatedAt().isBefore(to)) {
+                        consumer.accept(event);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static boolean isArchive(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+    
+    private static boolean overlaps(Path path, LocalDateTime from, LocalDateTime to) {
+        String[] parts = path.getFileName().toString()
+            .substring(PREFIX.length(), path.getFileName().toString().length() - SUFFIX.length())
+            .split("-");
+        try {
+            // Names carry whole seconds; widen the range by one second to be safe
+            LocalDateTime first = LocalDateTime.parse(parts[0], FILE_TIME);
+            LocalDateTime last = LocalDateTime.parse(parts[1], FILE_TIME).plusSeconds(1);
+            return first.isBefore(to) && !last.isBefore(from);
+        } catch (Exception e) {
+            log.warn("Skipping archive file with unexpected name: {}", path);
+            return false;
+        }
+    }
+}
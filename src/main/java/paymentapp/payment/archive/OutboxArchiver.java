@@ -0,0 +1,108 @@
+package paymentapp.payment.archive;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.repository.OutboxEventRepository;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Moves processed outbox rows older than the retention window out of the hot
+// table. Each chunk is written to an archive file first and deleted after, so
+// a failure in between archives the chunk twice rather than losing it.
+@Component
+@ConditionalOnProperty(name = "payment.outbox.archive.enabled", havingValue = "true")
+@Slf4j
+public class OutboxArchiver {
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxArchiveStore archiveStore;
+    private final ShardRouter shardRouter;
+    private final Counter archivedRows;
+    
+    @Value("${payment.outbox.archive.retention-hours:72}")
+    private long retentionHours;
+    
+    @Value("${payment.outbox.archive.chunk-size:1000}")
+    private int chunkSize;
+    
+    @Value("${payment.outbox.archive.max-chunks-per-run:50}")
+    private int maxChunksPerRun;
+    
+    @Value("${payment.outbox.archive.pause-ms:100}")
+    private long pauseMs;
+    
+    public OutboxArchiver(OutboxEventRepository outboxEventRepository,
+            OutboxArchiveStore archiveStore,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry) {
+        if (!archiveStore.isConfigured()) {
+            throw new IllegalStateException(
+                "Outbox archiving needs payment.outbox.archive.directory (OUTBOX_ARCHIVE_DIR) on durable storage");
+        }
+        this.outboxEventRepository = outboxEventRepository;
+        this.archiveStore = archiveStore;
+        this.shardRouter = shardRouter;
+        this.archivedRows = meterRegistry.counter("payment.outbox.archive.rows");
+    }
+    
+    @Scheduled(fixedDelayString = "${payment.outbox.archive.interval-ms:300000}")
+    public void archiveProcessedEvents() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        for (int shard : shardRouter.shards()) {
+            try {
+                long archived = archiveShard(shard, cutoff);
+                if (archived > 0) {
+                    log.info("Archived processed outbox events: shard={}, count={}", shard, archived);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error archiving outbox events on shard {}", shard, e);
+            }
+        }
+    }
+    
+    private long archiveShard(int shard, LocalDateTime cutoff) throws InterruptedException {
+        long total = 0;
+        for (int i = 0; i < maxChunksPerRun; i++) {
+            Integer archived = shardRouter.inTransactionOnShard(shard, status -> archiveChunk(shard, cutoff));
+            int count = archived == null ? 0 : archived;
+            total += count;
+            archivedRows.increment(count);
+            if (count < chunkSize) {
+                break;
+            }
+            Thread.sleep(pauseMs);
+        }
+        return total;
+    }
+    
+    private int archiveChunk(int shard, LocalDateTime cutoff) {
+        List<OutboxEvent> events = outboxEventRepository.findArchivable(cutoff, chunkSize);
+        if (events.isEmpty()) {
+            return 0;
+        }
+        
+        try {
+            Path file = archiveStore.write(shard, events);
+            log.debug("Wrote outbox archive: file={}, count={}", file, events.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        
+        outboxEventRepository.deleteProcessed(events.stream().map(OutboxEvent::getId).toList());
+        return events.size();
+    }
+}
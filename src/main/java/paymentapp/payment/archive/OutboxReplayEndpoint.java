@@ -0,0 +1,75 @@
+package paymentapp.payment.archive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.service.OutboxPublisher;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Re-publishes archived outbox events created in [from, to) to their original
+// topics and keys. Consumers already have to tolerate redelivery, so a replay
+// is safe to repeat. Not exposed over HTTP unless added to ACTUATOR_EXPOSURE,
+// which should only be done on a management port that is not publicly reachable.
+//   POST /actuator/outboxreplay {"from": "2024-01-01T00:00:00", "to": "2024-01-02T00:00:00"}
+@Component
+@Endpoint(id = "outboxreplay")
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxReplayEndpoint {
+    
+    private final OutboxArchiveStore archiveStore;
+    private final OutboxPublisher outboxPublisher;
+    
+    @Value("${payment.outbox.batch-size:500}")
+    private int batchSize;
+    
+    @WriteOperation
+    public Map<String, Object> replay(String from, String to, @Nullable String eventType) throws IOException {
+        LocalDateTime fromTime = LocalDateTime.parse(from);
+        LocalDateTime toTime = LocalDateTime.parse(to);
+        
+        long[] counts = new long[2];
+        List<OutboxEvent> batch = new ArrayList<>(batchSize);
+        archiveStore.read(fromTime, toTime, event -> {
+            if (eventType != null && !eventType.equals(event.getEventType())) {
+                return;
+            }
+            batch.add(event);
+            if (batch.size() >= batchSize) {
+                publish(batch, counts);
+            }
+        });
+        publish(batch, counts);
+        
+        log.info("Replayed archived outbox events: from={}, to={}, eventType={}, published={}, failed={}",
+                fromTime, toTime, eventType, counts[0], counts[1]);
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", fromTime.toString());
+        result.put("to", toTime.toString());
+        result.put("published", counts[0]);
+        result.put("failed", counts[1]);
+        return result;
+    }
+    
+    private void publish(List<OutboxEvent> batch, long[] counts) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int published = outboxPublisher.publish(batch).size();
+        counts[0] += published;
+        counts[1] += batch.size() - published;
+        batch.clear();
+    }
+}
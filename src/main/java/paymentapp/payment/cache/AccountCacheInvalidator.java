@@ -0,0 +1,23 @@
+package paymentapp.payment.cache;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.entity.Account;
+
+// JPA entity listener on Account; Hibernate obtains it from the Spring context
+@Component
+@RequiredArgsConstructor
+public class AccountCacheInvalidator {
+    
+    private final AccountStatusCache accountStatusCache;
+    
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void accountChanged(Account account) {
+        accountStatusCache.invalidateAfterCommit(account.getAccountId());
+    }
+}
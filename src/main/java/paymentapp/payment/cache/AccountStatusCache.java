@@ -0,0 +1,87 @@
+package paymentapp.payment.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import paymentapp.payment.entity.Account;
+import paymentapp.payment.repository.AccountRepository;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Status of account_mst rows for the transfer validations. Updates made
+// through JPA invalidate their entry once they commit (AccountCacheInvalidator);
+// changes made elsewhere, including by other instances, show up within the TTL.
+// Unknown accounts are not cached, so a newly created one is usable at once.
+// Hits and misses are exported as cache.gets{cache=account-status}.
+@Component
+public class AccountStatusCache {
+    
+    private static final String NAME = "account-status";
+    
+    private final AccountRepository accountRepository;
+    private final LoadingCache<String, Account.AccountStatus> cache;
+    
+    public AccountStatusCache(AccountRepository accountRepository,
+            MeterRegistry meterRegistry,
+            @Value("${payment.cache.account-status.ttl-ms:60000}") long ttlMs,
+            @Value("${payment.cache.account-status.max-size:100000}") long maxSize) {
+        this.accountRepository = accountRepository;
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .maximumSize(maxSize)
+            .recordStats()
+            .build(new CacheLoader<>() {
+                @Override
+                public Account.AccountStatus load(String accountId) {
+                    return accountRepository.findById(accountId).map(Account::getStatus).orElse(null);
+                }
+                
+                @Override
+                public Map<String, Account.AccountStatus> loadAll(Set<? extends String> accountIds) {
+                    return accountRepository.findAllById(Set.copyOf(accountIds)).stream()
+                        .collect(Collectors.toMap(Account::getAccountId, Account::getStatus));
+                }
+            });
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+    
+    public boolean isActive(String accountId) {
+        return cache.get(accountId) == Account.AccountStatus.ACTIVE;
+    }
+    
+    // One query for all accounts that are not cached yet
+    public Set<String> activeOf(Collection<String> accountIds) {
+        return cache.getAll(accountIds).entrySet().stream()
+            .filter(entry -> entry.getValue() == Account.AccountStatus.ACTIVE)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet());
+    }
+    
+    public void invalidate(String accountId) {
+        cache.invalidate(accountId);
+    }
+    
+    // Invalidating before the commit would let a concurrent reader cache the old status again
+    public void invalidateAfterCommit(String accountId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(accountId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                invalidate(accountId);
+            }
+        });
+    }
+}
@@ -0,0 +1,13 @@
+package paymentapp.payment.cache;
+
+import java.util.Optional;
+
+public interface BalanceCache {
+    
+    Optional<BalanceSnapshot> get(String accountId);
+    
+    // Stores the snapshot unless the cache already holds the same or a newer version
+    void putIfNewer(BalanceSnapshot snapshot);
+    
+    void evict(String accountId);
+}
@@ -0,0 +1,20 @@
+package paymentapp.payment.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// Cached read view of a balance. The version grows with every write to the
+// balances row or its slot rows, so an older snapshot never replaces a newer one.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceSnapshot {
+    private String accountId;
+    private BigDecimal book;
+    private BigDecimal available;
+    private BigDecimal openHold;
+    private Long version;
+}
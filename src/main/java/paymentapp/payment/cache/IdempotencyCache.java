@@ -0,0 +1,28 @@
+package paymentapp.payment.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+// Recently accepted idempotency keys and their responses. Only a fast path in
+// front of idempotency_keys, which stays the source of truth.
+public interface IdempotencyCache {
+    
+    Optional<String> get(String idempotencyKey);
+    
+    void put(String idempotencyKey, String response);
+    
+    default void putAfterCommit(String idempotencyKey, String response) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(idempotencyKey, response);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(idempotencyKey, response);
+            }
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package paymentapp.payment.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// In-process cache, used when Redis is not enabled
+@Component
+@ConditionalOnProperty(name = "payment.cache.redis.enabled", havingValue = "false", matchIfMissing = true)
+public class LocalBalanceCache implements BalanceCache {
+    
+    private final Cache<String, BalanceSnapshot> cache;
+    
+    public LocalBalanceCache(@Value("${payment.cache.balance.ttl-ms:5000}") long ttlMs,
+            @Value("${payment.cache.balance.max-size:10000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .maximumSize(maxSize)
+            .build();
+    }
+    
+    @Override
+    public Optional<BalanceSnapshot> get(String accountId) {
+        return Optional.ofNullable(cache.getIfPresent(accountId));
+    }
+    
+    @Override
+    public void putIfNewer(BalanceSnapshot snapshot) {
+        cache.asMap().merge(snapshot.getAccountId(), snapshot,
+            (current, candidate) -> candidate.getVersion() > current.getVersion() ? candidate : current);
+    }
+    
+    @Override
+    public void evict(String accountId) {
+        cache.invalidate(accountId);
+    }
+}
@@ -0,0 +1,35 @@
+package paymentapp.payment.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Component
+@ConditionalOnProperty(name = "payment.cache.redis.enabled", havingValue = "false", matchIfMissing = true)
+public class LocalIdempotencyCache implements IdempotencyCache {
+    
+    private final Cache<String, String> cache;
+    
+    public LocalIdempotencyCache(@Value("${payment.idempotency.cache.ttl-ms:600000}") long ttlMs,
+            @Value("${payment.idempotency.cache.max-size:100000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .maximumSize(maxSize)
+            .build();
+    }
+    
+    @Override
+    public Optional<String> get(String idempotencyKey) {
+        return Optional.ofNullable(cache.getIfPresent(idempotencyKey));
+    }
+    
+    @Override
+    public void put(String idempotencyKey, String response) {
+        cache.put(idempotencyKey, response);
+    }
+}
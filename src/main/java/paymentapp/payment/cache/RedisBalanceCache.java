@@ -0,0 +1,78 @@
+package paymentapp.payment.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+// Shared cache across instances. Every Redis failure is treated as a miss so
+// balance reads keep working from MySQL when Redis is down.
+@Component
+@ConditionalOnProperty(name = "payment.cache.redis.enabled", havingValue = "true")
+@Slf4j
+public class RedisBalanceCache implements BalanceCache {
+    
+    private static final String KEY_PREFIX = "balance:";
+    
+    // Compare-and-set on the version field, so concurrent writers cannot
+    // replace a newer snapshot with an older one
+    private static final RedisScript<Long> PUT_IF_NEWER = new DefaultRedisScript<>(
+        "local current = redis.call('HGET', KEYS[1], 'version') " +
+        "if current and tonumber(current) >= tonumber(ARGV[1]) then return 0 end " +
+        "redis.call('HSET', KEYS[1], 'version', ARGV[1], 'data', ARGV[2]) " +
+        "redis.call('PEXPIRE', KEYS[1], ARGV[3]) " +
+        "return 1", Long.class);
+    
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final long ttlMs;
+    
+    public RedisBalanceCache(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+            @Value("${payment.cache.balance.ttl-ms:5000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttlMs = ttlMs;
+    }
+    
+    @Override
+    public Optional<BalanceSnapshot> get(String accountId) {
+        try {
+            Object data = redisTemplate.opsForHash().get(KEY_PREFIX + accountId, "data");
+            if (data == null) {
+                return Optional.empty();
+            }
+            return Optional.of(objectMapper.readValue(data.toString(), BalanceSnapshot.class));
+        } catch (Exception e) {
+            log.debug("Balance cache read failed for account: {}", accountId, e);
+            return Optional.empty();
+        }
+    }
+    
+    @Override
+    public void putIfNewer(BalanceSnapshot snapshot) {
+        try {
+            redisTemplate.execute(PUT_IF_NEWER, List.of(KEY_PREFIX + snapshot.getAccountId()),
+                String.valueOf(snapshot.getVersion()),
+                objectMapper.writeValueAsString(snapshot),
+                String.valueOf(ttlMs));
+        } catch (Exception e) {
+            log.debug("Balance cache write failed for account: {}", snapshot.getAccountId(), e);
+        }
+    }
+    
+    @Override
+    public void evict(String accountId) {
+        try {
+            redisTemplate.delete(KEY_PREFIX + accountId);
+        } catch (Exception e) {
+            log.warn("Balance cache evict failed for account: {}", accountId, e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package paymentapp.payment.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// Shared across instances, so a retry routed to another node still takes the
+// fast path. Redis failures fall through to the database check.
+@Component
+@ConditionalOnProperty(name = "payment.cache.redis.enabled", havingValue = "true")
+@Slf4j
+public class RedisIdempotencyCache implements IdempotencyCache {
+    
+    private static final String KEY_PREFIX = "idempotency:";
+    
+    private final StringRedisTemplate redisTemplate;
+    private final Duration ttl;
+    
+    public RedisIdempotencyCache(StringRedisTemplate redisTemplate,
+            @Value("${payment.idempotency.cache.ttl-ms:600000}") long ttlMs) {
+        this.redisTemplate = redisTemplate;
+        this.ttl = Duration.ofMillis(ttlMs);
+    }
+    
+    @Override
+    public Optional<String> get(String idempotencyKey) {
+        try {
+            return Optional.ofNullable(redisTemplate.opsForValue().get(KEY_PREFIX + idempotencyKey));
+        } catch (Exception e) {
+            log.debug("Idempotency cache read failed for key: {}", idempotencyKey, e);
+            return Optional.empty();
+        }
+    }
+    
+    @Override
+    public void put(String idempotencyKey, String response) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + idempotencyKey, response, ttl);
+        } catch (Exception e) {
+            log.debug("Idempotency cache write failed for key: {}", idempotencyKey, e);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package paymentapp.payment.codec;
+
+import paymentapp.payment.event.BalanceUpdateEvent;
+import paymentapp.payment.event.TransferCancelledEvent;
+import paymentapp.payment.event.TransferCommittedEvent;
+import paymentapp.payment.event.TransferCreditedEvent;
+import paymentapp.payment.event.TransferHeldEvent;
+import paymentapp.payment.event.TransferRejectedEvent;
+import paymentapp.payment.event.TransferRequestedEvent;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+// Compact, schema-per-type encoding of the event classes:
+//
+//   [version][type tag][fields in declaration order]
+//
+// Strings are a varint length + 1 (0 = null) followed by UTF-8 bytes, Longs a
+// presence byte and a zigzag varint, BigDecimals a kind byte (0 = null,
+// 1 = unscaled value fits a long, 2 = unscaled value as two's complement
+// bytes) followed by the scale. The version byte is never '{' or whitespace,
+// so consumers can tell binary records from JSON ones by the first byte.
+//
+// Fields are positional: adding one means a new VERSION, and the reader of the
+// previous version has to be kept until no producer writes it.
+public class BinaryEventCodec implements EventCodec {
+    
+    public static final byte VERSION = 1;
+    
+    private static final Schema<?>[] BY_TAG = new Schema<?>[8];
+    private static final Map<Class<?>, Schema<?>> BY_TYPE = new HashMap<>();
+    
+    static {
+        register(new Schema<>(1, TransferRequestedEvent.class, TransferRequestedEvent::new,
+            (event, out) -> {
+                out.writeString(event.getTxId());
+                out.writeString(event.getSourceAccount());
+                out.writeString(event.getDestinationAccount());
+                out.writeDecimal(event.getAmount());
+                out.writeString(event.getDescription());
+                out.writeLong(event.getTimestamp());
+            },
+            (event, in) -> {
+                event.setTxId(in.readString());
+                event.setSourceAccount(in.readString());
+                event.setDestinationAccount(in.readString());
+                event.setAmount(in.readDecimal());
+                event.setDescription(in.readString());
+                event.setTimestamp(in.readLong());
+            }));
+        register(new Schema<>(2, TransferHeldEvent.class, TransferHeldEvent::new,
+            (event, out) -> {
+                out.writeString(event.getTxId());
+                out.writeString(event.getSourceAccount());
+                out.writeString(event.getDestinationAccount());
+                out.writeDecimal(event.getAmount());
+                out.writeLong(event.getTimestamp());
+            },
+            (event, in) -> {
+                event.setTxId(in.readString());
+                event.setSourceAccount(in.readString());
+                event.setDestinationAccount(in.readString());
+                event.setAmount(in.readDecimal());
+                event.setTimestamp(in.readLong());
+            }));
+        register(new Schema<>(3, TransferCreditedEvent.class, TransferCreditedEvent::new,
+            (event, out) -> {
+                out.writeString(event.getTxId());
+                out.writeString(event.getSourceAccount());
+                out.writeString(event.getDestinationAccount());
+                out.writeDecimal(event.getAmount());
+                out.writeLong(event.getTimestamp());
+            },
+            (event, in) -> {
+                event.setTxId(in.readString());
+                event.setSourceAccount(in.readString());
+                event.setDestinationAccount(in.readString());
+                event.setAmount(in.readDecimal());
+                event.setTimestamp(in.readLong());
+            }));
+        register(new Schema<>(4, TransferCommittedEvent.class, TransferCommittedEvent::new,
+            (event, out) -> {
+                out.writeString(event.getTxId());
+                out.writeString(event.getSourceAccount());
+                out.writeString(event.getDestinationAccount());
+                out.writeDecimal(event.getAmount());
+                out.writeLong(event.getTimestamp());
+            },
+            (event, in) -> {
+                event.setTxId(in.readString());
+                event.setSourceAccount(in.readString());
+                event.setDestinationAccount(in.readString());
+                event.setAmount(in.readDecimal());
+                event.setTimestamp(in.readLong());
+            }));
+        register(new Schema<>(5, TransferRejectedEvent.class, TransferRejectedEvent::new,
+            (event, out) -> {
+                out.writeString(event.getTxId());
+                out.writeString(event.getSourceAccount());
+                out.writeString(event.getDestinationAccount());
+                out.writeDecimal(event.getAmount());
+                out.writeString(event.getReason());
+                out.writeLong(event.getTimestamp());
+            },
+            (event, in) -> {
+                event.setTxId(in.readString());
+                event.setSourceAccount(in.readString());
+                event.setDestinationAccount(in.readString());
+                event.setAmount(in.readDecimal());
+                event.setReason(in.readString());
+                event.setTimestamp(in.readLong());
+            }));
+        register(new Schema<>(6, TransferCancelledEvent.class, TransferCancelledEvent::new,
+            (event, out) -> {
+                out.writeString(event.getTxId());
+                out.writeString(event.getSourceAccount());
+                out.writeString(event.getDestinationAccount());
+                out.writeDecimal(event.getAmount());
+                out.writeString(event.getReason());
+                out.writeLong(event.getTimestamp());
+            },
+            (event, in) -> {
+                event.setTxId(in.readString());
+                event.setSourceAccount(in.readString());
+                event.setDestinationAccount(in.readString());
+                event.setAmount(in.readDecimal());
+                event.setReason(in.readString());
+                event.setTimestamp(in.readLong());
+            }));
+        register(new Schema<>(7, BalanceUpdateEvent.class, BalanceUpdateEvent::new,
+            (event, out) -> {
+                out.writeString(event.getAccountId());
+                out.writeString(event.getTxId());
+                out.writeString(event.getOperation());
+                out.writeDecimal(event.getAmount());
+                out.writeLong(event.getTimestamp());
+            },
+            (event, in) -> {
+                event.setAccountId(in.readString());
+                event.setTxId(in.readString());
+                event.setOperation(in.readString());
+                event.setAmount(in.readDecimal());
+                event.setTimestamp(in.readLong());
+            }));
+    }
+    
+    private static void register(Schema<?> schema) {
+        BY_TAG[schema.tag] = schema;
+        BY_TYPE.put(schema.type, schema);
+    }
+    
+    @Override
+    public boolean supports(Class<?> type) {
+        return BY_TYPE.containsKey(type);
+    }
+    
+    @Override
+    public byte[] encode(Object event) {
+        Schema<?> schema = BY_TYPE.get(event.getClass());
+        if (schema == null) {
+            throw new IllegalArgumentException("No binary schema for " + event.getClass().getName());
+        }
+        Writer out = new Writer();
+        out.writeByte(VERSION);
+        out.writeByte(schema.tag);
+        schema.write(event, out);
+        return out.toByteArray();
+    }
+    
+    @Override
+    public Object decode(byte[] data) {
+        if (!accepts(data)) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " binary event");
+        }
+        int tag = data[1];
+        Schema<?> schema = tag > 0 && tag < BY_TAG.length ? BY_TAG[tag] : null;
+        if (schema == null) {
+            throw new IllegalArgumentException("Unknown event type tag: " + tag);
+        }
+        Reader in = new Reader(data, 2);
+        Object event = schema.read(in);
+        if (in.position != data.length) {
+            throw new IllegalArgumentException("Trailing bytes after " + schema.type.getSimpleName());
+        }
+        return event;
+    }
+    
+    @Override
+    public boolean accepts(byte[] data) {
+        return data != null && data.length >= 2 && data[0] == VERSION;
+    }
+    
+    private static final class Schema<T> {
+        private final int tag;
+        private final Class<T> type;
+        private final Supplier<T> factory;
+        private final BiConsumer<T, Writer> writer;
+        private final BiConsumer<T, Reader> reader;
+        
+        private Schema(int tag, Class<T> type, Supplier<T> factory,
+                BiConsumer<T, Writer> writer, BiConsumer<T, Reader> reader) {
+            this.tag = tag;
+            this.type = type;
+            this.factory = factory;
+            this.writer = writer;
+            this.reader = reader;
+        }
+        
+        private void write(Object event, Writer out) {
+            writer.accept(type.cast(event), out);
+        }
+        
+        private T read(Reader in) {
+            T event = factory.get();
+            reader.accept(event, in);
+            return event;
+        }
+    }
+    
+    static final class Writer {
+        private byte[] buffer = new byte[128];
+        private int position;
+        
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+        
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+        
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+        
+        void writeLong(Long value) {
+            if (value == null) {
+                writeByte(0);
+                return;
+            }
+            writeByte(1);
+            writeVarLong(zigzag(value));
+        }
+        
+        void writeDecimal(BigDecimal value) {
+            if (value == null) {
+                writeByte(0);
+                return;
+            }
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                writeByte(1);
+                writeVarLong(zigzag(value.scale()));
+                writeVarLong(zigzag(unscaled.longValue()));
+            } else {
+                byte[] bytes = unscaled.toByteArray();
+                writeByte(2);
+                writeVarLong(zigzag(value.scale()));
+                writeVarLong(bytes.length);
+                writeBytes(bytes);
+            }
+        }
+        
+        private void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+        
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+    
+    static final class Reader {
+        private final byte[] data;
+        private int position;
+        
+        Reader(byte[] data, int position) {
+            this.data = data;
+            this.position = position;
+        }
+        
+        int readByte() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Truncated binary event");
+            }
+            return data[position++];
+        }
+        
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+        
+        String readString() {
+            long length = readVarLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = readBytes(length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        Long readLong() {
+            return readByte() == 0 ? null : unzigzag(readVarLong());
+        }
+        
+        BigDecimal readDecimal() {
+            int kind = readByte();
+            if (kind == 0) {
+                return null;
+            }
+            int scale = Math.toIntExact(unzigzag(readVarLong()));
+            if (kind == 1) {
+                return BigDecimal.valueOf(unzigzag(readVarLong()), scale);
+            }
+            return new BigDecimal(new BigInteger(readBytes(readVarLong())), scale);
+        }
+        
+        private byte[] readBytes(long length) {
+            if (length > data.length - position) {
+                throw new IllegalArgumentException("Truncated binary event");
+            }
+            byte[] bytes = Arrays.copyOfRange(data, position, position + (int) length);
+            position += (int) length;
+            return bytes;
+        }
+    }
+    
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
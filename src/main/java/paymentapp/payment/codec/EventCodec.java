@@ -0,0 +1,14 @@
+package paymentapp.payment.codec;
+
+// Wire format of the event payloads carried on Kafka and stored in the outbox
+public interface EventCodec {
+    
+    boolean supports(Class<?> type);
+    
+    byte[] encode(Object event);
+    
+    Object decode(byte[] data);
+    
+    // True if the bytes were produced by this codec
+    boolean accepts(byte[] data);
+}
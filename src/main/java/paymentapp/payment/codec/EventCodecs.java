@@ -0,0 +1,19 @@
+package paymentapp.payment.codec;
+
+public final class EventCodecs {
+    
+    public static final String JSON = "json";
+    public static final String BINARY = "binary";
+    
+    private EventCodecs() {
+    }
+    
+    // Returns null for JSON, which stays with the Jackson setup used everywhere else
+    public static EventCodec forName(String name) {
+        return switch (name == null ? JSON : name.trim().toLowerCase()) {
+            case JSON -> null;
+            case BINARY -> new BinaryEventCodec();
+            default -> throw new IllegalArgumentException("Unknown event codec: " + name);
+        };
+    }
+}
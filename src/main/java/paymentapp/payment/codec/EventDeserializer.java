@@ -0,0 +1,41 @@
+package paymentapp.payment.codec;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+// Consumer value deserializer that reads both formats, so producers can be
+// switched between JSON and the binary codec one instance at a time
+public class EventDeserializer implements Deserializer<Object> {
+    
+    private final EventCodec binary = new BinaryEventCodec();
+    private final JsonDeserializer<Object> json = new JsonDeserializer<>();
+    
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+    
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (binary.accepts(data)) {
+            return binary.decode(data);
+        }
+        return json.deserialize(topic, data);
+    }
+    
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (binary.accepts(data)) {
+            return binary.decode(data);
+        }
+        return json.deserialize(topic, headers, data);
+    }
+    
+    @Override
+    public void close() {
+        json.close();
+    }
+}
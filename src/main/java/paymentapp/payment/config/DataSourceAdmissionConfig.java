@@ -0,0 +1,26 @@
+package paymentapp.payment.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+// Puts admission control in front of the single-datasource pool; shard pools
+// are wrapped where ShardDataSourceConfig builds them
+@Configuration
+@ConditionalOnProperty(name = "payment.db.admission.enabled", havingValue = "true")
+public class DataSourceAdmissionConfig {
+    
+    @Bean
+    public static BeanPostProcessor dataSourceAdmissionPostProcessor(Environment environment) {
+        long timeoutMs = environment.getProperty("payment.db.admission.timeout-ms", Long.class, 30000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof HikariDataSource pool ? AdmissionControlDataSource.of(pool, timeoutMs) : bean;
+            }
+        };
+    }
+}
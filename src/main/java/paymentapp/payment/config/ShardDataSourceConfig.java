@@ -0,0 +1,65 @@
+package paymentapp.payment.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.DefaultKafkaProducerFactoryCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import paymentapp.payment.shard.ShardPartitioner;
+import paymentapp.payment.shard.ShardProperties;
+import paymentapp.payment.shard.ShardRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "payment.shard.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardDataSourceConfig {
+    
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardProperties properties,
+            @Value("${payment.db.admission.enabled:false}") boolean admissionControl,
+            @Value("${payment.db.admission.timeout-ms:30000}") long admissionTimeoutMs) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < properties.getTotalShards(); shard++) {
+            ShardProperties.Node node = properties.getDatasources().get(shard);
+            if (node == null) {
+                throw new IllegalStateException("No datasource configured for shard " + shard);
+            }
+            HikariDataSource pool = createDataSource(shard, node);
+            targets.put(shard, admissionControl ? AdmissionControlDataSource.of(pool, admissionTimeoutMs) : pool);
+        }
+        
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(targets.get(properties.getCurrentShard()));
+        return routingDataSource;
+    }
+    
+    @Bean
+    public DefaultKafkaProducerFactoryCustomizer shardPartitionerCustomizer(ShardProperties properties) {
+        return producerFactory -> producerFactory.updateConfigs(Map.of(
+            ProducerConfig.PARTITIONER_CLASS_CONFIG, ShardPartitioner.class.getName(),
+            ShardPartitioner.TOTAL_SHARDS_CONFIG, properties.getTotalShards()));
+    }
+    
+    private HikariDataSource createDataSource(int shard, ShardProperties.Node node) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("shard-" + shard);
+        config.setJdbcUrl(node.getUrl());
+        config.setUsername(node.getUsername());
+        config.setPassword(node.getPassword());
+        config.setMaximumPoolSize(node.getMaximumPoolSize());
+        // As in spring.datasource.url, whatever the configured shard url says
+        config.addDataSourceProperty("useAffectedRows", true);
+        return new HikariDataSource(config);
+    }
+}
@@ -2,13 +2,16 @@ package paymentapp.payment.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import paymentapp.payment.dto.AccountBalanceResponse;
 import paymentapp.payment.dto.TransactionStatusResponse;
 import paymentapp.payment.dto.TransferRequest;
 import paymentapp.payment.dto.TransferResponse;
 import paymentapp.payment.service.PaymentService;
+import paymentapp.payment.service.TransactionStatusStream;
 
 @RestController
 @RequestMapping("/payments")
@@ -16,6 +19,7 @@ import paymentapp.payment.service.PaymentService;
 public class PaymentController {
     
     private final PaymentService paymentService;
+    private final TransactionStatusStream transactionStatusStream;
     
     @PostMapping("/transfer")
     public ResponseEntity<TransferResponse> initiateTransfer(@Valid @RequestBody TransferRequest request) {
@@ -41,4 +45,12 @@ public class PaymentController {
             .map(status -> ResponseEntity.ok(status))
             .orElse(ResponseEntity.notFound().build());
     }
+    
+    // Server-sent events: the current status first, then every transition until a terminal one
+    @GetMapping(value = "/transactions/{txId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTransactionStatus(@PathVariable String txId) {
+        return transactionStatusStream.subscribe(txId)
+            .map(emitter -> ResponseEntity.ok(emitter))
+            .orElse(ResponseEntity.notFound().build());
+    }
 }
\ No newline at end of file
@@ -23,5 +23,6 @@ public class TransferRequest {
     private String description;
     
     @NotBlank(message = "Idempotency key is required")
+    @Size(max = 50, message = "Idempotency key must not exceed 50 characters")
     private String idempotencyKey;
 }
\ No newline at end of file
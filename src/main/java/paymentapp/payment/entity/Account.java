@@ -4,11 +4,13 @@ import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import paymentapp.payment.cache.AccountCacheInvalidator;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "account_mst")
+@EntityListeners(AccountCacheInvalidator.class)
 @Data
 public class Account {
     @Id
@@ -0,0 +1,45 @@
+package paymentapp.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Credit stripe of a hot destination account. The account's book balance is
+// the balances row plus the sum of its slots.
+@Entity
+@Table(name = "balance_slots")
+@IdClass(BalanceSlot.SlotId.class)
+@Data
+public class BalanceSlot {
+    @Id
+    @Column(name = "account_id", length = 20)
+    private String accountId;
+    
+    @Id
+    @Column(name = "slot")
+    private Integer slot;
+    
+    @Column(name = "book", precision = 15, scale = 2, nullable = false)
+    private BigDecimal book = BigDecimal.ZERO;
+    
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SlotId implements Serializable {
+        private String accountId;
+        private Integer slot;
+    }
+}
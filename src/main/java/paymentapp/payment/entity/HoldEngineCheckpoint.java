@@ -0,0 +1,31 @@
+package paymentapp.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Total of HOLD amounts after ledgerId that have been written back to balances.
+// Successful holds in ledger_entries after ledgerId beyond this total were
+// decided but not yet flushed. The holds up to ledgerId are folded out of the
+// total as the mark advances, so a load only sums the ledger's recent holds.
+@Entity
+@Table(name = "hold_engine_checkpoints")
+@Data
+public class HoldEngineCheckpoint {
+    @Id
+    @Column(name = "account_id", length = 20)
+    private String accountId;
+    
+    @Column(name = "ledger_id", nullable = false)
+    private long ledgerId;
+    
+    @Column(name = "applied_hold_total", precision = 19, scale = 2, nullable = false)
+    private BigDecimal appliedHoldTotal = BigDecimal.ZERO;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
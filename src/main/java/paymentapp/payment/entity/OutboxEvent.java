@@ -20,9 +20,13 @@ public class OutboxEvent {
     @Column(name = "event_type", nullable = false, length = 50)
     private String eventType;
     
-    @Column(name = "payload", columnDefinition = "JSON", nullable = false)
+    @Column(name = "payload", columnDefinition = "JSON")
     private String payload;
     
+    // Binary-encoded event, sent to Kafka as is; payload is null when this is set
+    @Column(name = "payload_bytes", columnDefinition = "VARBINARY(2048)")
+    private byte[] payloadBytes;
+    
     @Column(name = "partition_key", nullable = false, length = 50)
     private String partitionKey;
     
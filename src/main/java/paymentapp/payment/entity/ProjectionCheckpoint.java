@@ -0,0 +1,47 @@
+package paymentapp.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Highest offset of a ledger.* partition whose events for this account have
+// been applied to balances. Lives on the account's shard and is written in the
+// same transaction as the balance change.
+@Entity
+@Table(name = "projection_checkpoints")
+@IdClass(ProjectionCheckpoint.CheckpointId.class)
+@Data
+public class ProjectionCheckpoint {
+    @Id
+    @Column(name = "account_id", length = 20)
+    private String accountId;
+    
+    @Id
+    @Column(name = "topic", length = 100)
+    private String topic;
+    
+    @Id
+    @Column(name = "partition_id")
+    private Integer partitionId;
+    
+    @Column(name = "applied_offset", nullable = false)
+    private Long appliedOffset;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CheckpointId implements Serializable {
+        private String accountId;
+        private String topic;
+        private Integer partitionId;
+    }
+}
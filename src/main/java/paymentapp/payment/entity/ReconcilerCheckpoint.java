@@ -0,0 +1,24 @@
+package paymentapp.payment.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+// High-water mark of a reconciler scan: every row up to last_id has been settled
+@Entity
+@Table(name = "reconciler_checkpoints")
+@Data
+public class ReconcilerCheckpoint {
+    @Id
+    @Column(name = "name", length = 50)
+    private String name;
+    
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+    
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
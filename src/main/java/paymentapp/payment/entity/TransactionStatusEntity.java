@@ -7,6 +7,7 @@ import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Entity
 @Table(name = "transaction_status")
@@ -41,6 +42,19 @@ public class TransactionStatusEntity {
     private LocalDateTime updatedAt;
     
     public enum Status {
-        REQUESTED, HELD, CREDITED, COMMITTED, REJECTED, CANCELLED
+        REQUESTED, HELD, CREDITED, COMMITTED, REJECTED, CANCELLED;
+        
+        // The statuses a transfer may move to this one from. COMMITTED follows
+        // HELD directly when the hold worker settles a same-shard transfer itself.
+        public Set<Status> predecessors() {
+            return switch (this) {
+                case REQUESTED -> Set.of();
+                case HELD -> Set.of(REQUESTED);
+                case CREDITED -> Set.of(HELD);
+                case COMMITTED -> Set.of(HELD, CREDITED);
+                case REJECTED -> Set.of(REQUESTED, HELD, CREDITED);
+                case CANCELLED -> Set.of(HELD);
+            };
+        }
     }
 }
\ No newline at end of file
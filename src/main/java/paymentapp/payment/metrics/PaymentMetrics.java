@@ -0,0 +1,64 @@
+package paymentapp.payment.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+
+// Meters shared by the saga stages (hold, credit, commit, projection, relay).
+// Tags are limited to stage and outcome, so the series count stays fixed
+// however many accounts and transactions pass through.
+@Component
+@RequiredArgsConstructor
+public class PaymentMetrics {
+    
+    public static final String SUCCESS = "success";
+    public static final String INSUFFICIENT_FUNDS = "insufficient_funds";
+    public static final String REJECTED = "rejected";
+    public static final String DUPLICATE = "duplicate";
+    public static final String ERROR = "error";
+    // Hold stage only: the transfer was settled in the hold transaction
+    public static final String FUSED = "fused";
+    
+    private final MeterRegistry meterRegistry;
+    
+    public Timer.Sample startStage() {
+        return Timer.start(meterRegistry);
+    }
+    
+    // One sample per listener invocation: a record, or a whole poll in batch mode
+    public void stopStage(Timer.Sample sample, String stage) {
+        sample.stop(meterRegistry.timer("payment.stage.duration", "stage", stage));
+    }
+    
+    public void outcome(String stage, String outcome) {
+        outcome(stage, outcome, 1);
+    }
+    
+    public void outcome(String stage, String outcome, long count) {
+        if (count > 0) {
+            meterRegistry.counter("payment.stage.events", "stage", stage, "outcome", outcome).increment(count);
+        }
+    }
+    
+    // Times the given database work through the commit of the surrounding transaction
+    public void timeDb(String stage, Runnable work) {
+        Timer timer = meterRegistry.timer("payment.stage.db.duration", "stage", stage);
+        long startNanos = System.nanoTime();
+        work.run();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+}
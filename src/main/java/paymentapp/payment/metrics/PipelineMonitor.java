@@ -0,0 +1,123 @@
+package paymentapp.payment.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.repository.OutboxEventRepository;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Samples what the stages cannot see from inside: outbox rows not yet relayed
+// and how far each consumer group is behind, summed per topic
+@Component
+@Slf4j
+public class PipelineMonitor {
+    
+    private final OutboxEventRepository outboxEventRepository;
+    private final ShardRouter shardRouter;
+    private final MeterRegistry meterRegistry;
+    private final AdminClient adminClient;
+    private final List<String> consumerGroups;
+    private final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    
+    @Value("${payment.metrics.admin-timeout-ms:5000}")
+    private long adminTimeoutMs;
+    
+    public PipelineMonitor(OutboxEventRepository outboxEventRepository,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry,
+            KafkaAdmin kafkaAdmin,
+            @Value("${payment.metrics.consumer-groups:hold-worker,credit-worker,commit-worker,balance-projector}")
+            String[] consumerGroups) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.shardRouter = shardRouter;
+        this.meterRegistry = meterRegistry;
+        this.adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties());
+        this.consumerGroups = List.of(consumerGroups);
+    }
+    
+    @PreDestroy
+    public void close() {
+        adminClient.close(Duration.ofMillis(adminTimeoutMs));
+    }
+    
+    @Scheduled(fixedDelayString = "${payment.metrics.monitor-interval-ms:10000}")
+    public void sample() {
+        for (int shard : shardRouter.shards()) {
+            try {
+                sampleOutbox(shard);
+            } catch (Exception e) {
+                log.warn("Could not sample outbox backlog on shard {}", shard, e);
+            }
+        }
+        for (String group : consumerGroups) {
+            try {
+                sampleLag(group);
+            } catch (Exception e) {
+                log.warn("Could not sample consumer lag of group {}", group, e);
+            }
+        }
+    }
+    
+    private void sampleOutbox(int shard) {
+        String shardTag = String.valueOf(shard);
+        shardRouter.runInTransactionOnShard(shard, status -> {
+            long backlog = outboxEventRepository.countByProcessedFalse();
+            LocalDateTime oldest = outboxEventRepository.findOldestUnprocessed();
+            long ageSeconds = oldest == null ? 0 : Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds());
+            gauge("payment.outbox.backlog", "shard", shardTag).set(backlog);
+            gauge("payment.outbox.oldest.age.seconds", "shard", shardTag).set(ageSeconds);
+        });
+    }
+    
+    private void sampleLag(String group) throws Exception {
+        Map<TopicPartition, OffsetAndMetadata> committed = adminClient.listConsumerGroupOffsets(group)
+            .partitionsToOffsetAndMetadata()
+            .get(adminTimeoutMs, TimeUnit.MILLISECONDS);
+        if (committed.isEmpty()) {
+            return;
+        }
+        Map<TopicPartition, ListOffsetsResult.ListOffsetsResultInfo> latest = adminClient.listOffsets(
+                committed.keySet().stream().collect(Collectors.toMap(tp -> tp, tp -> OffsetSpec.latest())))
+            .all()
+            .get(adminTimeoutMs, TimeUnit.MILLISECONDS);
+        
+        Map<String, Long> lagByTopic = new HashMap<>();
+        committed.forEach((partition, offset) -> {
+            ListOffsetsResult.ListOffsetsResultInfo end = latest.get(partition);
+            if (offset != null && end != null) {
+                lagByTopic.merge(partition.topic(), Math.max(0, end.offset() - offset.offset()), Long::sum);
+            }
+        });
+        lagByTopic.forEach((topic, lag) -> gauge("payment.consumer.lag", "group", group, "topic", topic).set(lag));
+    }
+    
+    private AtomicLong gauge(String name, String... tags) {
+        return gauges.computeIfAbsent(name + '|' + String.join("|", tags), key -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder(name, value, AtomicLong::get)
+                .tags(tags)
+                .register(meterRegistry);
+            return value;
+        });
+    }
+}
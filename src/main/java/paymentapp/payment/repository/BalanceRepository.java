@@ -1,35 +1,71 @@
 package paymentapp.payment.repository;
 
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import paymentapp.payment.cache.BalanceSnapshot;
 import paymentapp.payment.entity.Balance;
 
 import java.math.BigDecimal;
+import java.util.Optional;
 
 @Repository
 public interface BalanceRepository extends JpaRepository<Balance, String> {
+    // Every update below bumps the version, which the balance read cache relies on
+    @Query("SELECT new paymentapp.payment.cache.BalanceSnapshot(b.accountId, b.book, b.available, " +
+           "b.openHold, b.version) FROM Balance b WHERE b.accountId = :accountId")
+    Optional<BalanceSnapshot> findSnapshot(@Param("accountId") String accountId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Balance b WHERE b.accountId = :accountId")
+    Optional<Balance> lockBalance(@Param("accountId") String accountId);
+    
+    // Net change of several events at once, already checked against the locked row
     @Modifying
-    @Query("UPDATE Balance b SET b.openHold = b.openHold + :amount, " +
-           "b.available = b.available - :amount " +
-           "WHERE b.accountId = :accountId AND b.available >= :amount")
+    @Query("UPDATE Balance b SET b.book = b.book + :bookDelta, " +
+           "b.available = b.available + :availableDelta, " +
+           "b.openHold = b.openHold + :openHoldDelta, b.version = b.version + 1 " +
+           "WHERE b.accountId = :accountId")
+    int applyDeltas(@Param("accountId") String accountId, @Param("bookDelta") BigDecimal bookDelta,
+                    @Param("availableDelta") BigDecimal availableDelta,
+                    @Param("openHoldDelta") BigDecimal openHoldDelta);
+    
+    // A hold placed here is in balances already. If the hot-account engine has
+    // ever owned the account, its checkpoint counts the hold as applied too, so
+    // the engine's next load does not recover it a second time.
+    @Modifying
+    @Query(value = "UPDATE balances b LEFT JOIN hold_engine_checkpoints c ON c.account_id = b.account_id " +
+                   "SET b.open_hold = b.open_hold + :amount, b.available = b.available - :amount, " +
+                   "b.version = b.version + 1, c.applied_hold_total = c.applied_hold_total + :amount " +
+                   "WHERE b.account_id = :accountId AND b.available >= :amount",
+           nativeQuery = true)
     int createHold(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
     
+    // Unconditional variant used by the hot-account engine, which has already
+    // checked availability in memory
+    @Modifying
+    @Query("UPDATE Balance b SET b.openHold = b.openHold + :amount, " +
+           "b.available = b.available - :amount, b.version = b.version + 1 " +
+           "WHERE b.accountId = :accountId")
+    int applyHolds(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
+    
     @Modifying
-    @Query("UPDATE Balance b SET b.openHold = b.openHold - :amount " +
+    @Query("UPDATE Balance b SET b.openHold = b.openHold - :amount, b.version = b.version + 1 " +
            "WHERE b.accountId = :accountId AND b.openHold >= :amount")
     int releaseHold(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
     
     @Modifying
-    @Query("UPDATE Balance b SET b.book = b.book + :amount " +
+    @Query("UPDATE Balance b SET b.book = b.book + :amount, b.version = b.version + 1 " +
            "WHERE b.accountId = :accountId")
     int creditAmount(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
     
     @Modifying
-    @Query("UPDATE Balance b SET b.book = b.book - :amount " +
+    @Query("UPDATE Balance b SET b.book = b.book - :amount, b.version = b.version + 1 " +
            "WHERE b.accountId = :accountId AND b.book >= :amount")
     int debitAmount(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package paymentapp.payment.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import paymentapp.payment.entity.BalanceSlot;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface BalanceSlotRepository extends JpaRepository<BalanceSlot, BalanceSlot.SlotId> {
+    @Modifying
+    @Query(value = "INSERT INTO balance_slots (account_id, slot, book, version) " +
+                   "VALUES (:accountId, :slot, :amount, 1) " +
+                   "ON DUPLICATE KEY UPDATE book = book + VALUES(book), version = version + 1",
+           nativeQuery = true)
+    int creditSlot(@Param("accountId") String accountId, @Param("slot") int slot, 
+                   @Param("amount") BigDecimal amount);
+    
+    @Query("SELECT COALESCE(SUM(s.book), 0) FROM BalanceSlot s WHERE s.accountId = :accountId")
+    BigDecimal sumBook(@Param("accountId") String accountId);
+    
+    @Query("SELECT COALESCE(SUM(s.version), 0) FROM BalanceSlot s WHERE s.accountId = :accountId")
+    Long sumVersion(@Param("accountId") String accountId);
+    
+    // Slots are always locked in slot order so concurrent folds cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BalanceSlot s WHERE s.accountId = :accountId ORDER BY s.slot")
+    List<BalanceSlot> lockSlots(@Param("accountId") String accountId);
+    
+    @Modifying
+    @Query("UPDATE BalanceSlot s SET s.book = 0, s.version = s.version + 1 " +
+           "WHERE s.accountId = :accountId")
+    int clearSlots(@Param("accountId") String accountId);
+}
@@ -0,0 +1,26 @@
+package paymentapp.payment.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import paymentapp.payment.entity.HoldEngineCheckpoint;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface HoldEngineCheckpointRepository extends JpaRepository<HoldEngineCheckpoint, String> {
+    @Modifying
+    @Query("UPDATE HoldEngineCheckpoint c SET c.appliedHoldTotal = c.appliedHoldTotal + :amount " +
+           "WHERE c.accountId = :accountId")
+    int addAppliedHolds(@Param("accountId") String accountId, @Param("amount") BigDecimal amount);
+    
+    // Moves the ledger mark from fromId to toId; amount is the holds in between,
+    // which leave the applied total. Loses to a concurrent advance from the same mark.
+    @Modifying
+    @Query("UPDATE HoldEngineCheckpoint c SET c.ledgerId = :toId, c.appliedHoldTotal = c.appliedHoldTotal - :amount " +
+           "WHERE c.accountId = :accountId AND c.ledgerId = :fromId")
+    int advanceLedgerId(@Param("accountId") String accountId, @Param("fromId") long fromId,
+                        @Param("toId") long toId, @Param("amount") BigDecimal amount);
+}
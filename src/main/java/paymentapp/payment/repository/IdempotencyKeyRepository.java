@@ -1,14 +1,57 @@
 package paymentapp.payment.repository;
 
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import paymentapp.payment.entity.IdempotencyKey;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
     Optional<IdempotencyKey> findByTxIdAndExpiresAtAfter(String txId, LocalDateTime now);
-}
\ No newline at end of file
+    
+    // Returns 0 when the key already exists, without raising a duplicate-key error.
+    // Not INSERT IGNORE: that would also turn a too-long key into a truncation warning.
+    // The 0 relies on the connection reporting affected rather than found rows.
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (tx_id, status, response, created_at, expires_at) " +
+                   "VALUES (:txId, 'SUCCESS', :response, :now, :expiresAt) " +
+                   "ON DUPLICATE KEY UPDATE tx_id = tx_id",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("txId") String txId, @Param("response") String response,
+                       @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    // Takes over a key that has expired or whose earlier attempt failed
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET status = 'SUCCESS', response = :response, " +
+                   "created_at = :now, expires_at = :expiresAt " +
+                   "WHERE tx_id = :txId AND (expires_at <= :now OR status = 'FAILED')",
+           nativeQuery = true)
+    int replaceStale(@Param("txId") String txId, @Param("response") String response,
+                     @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    // Walks idx_expires_at, which also carries the primary key, so no row is read
+    @Query(value = "SELECT tx_id FROM idempotency_keys WHERE expires_at < :cutoff " +
+                   "ORDER BY expires_at, tx_id LIMIT :limit",
+           nativeQuery = true)
+    List<String> findExpiredKeys(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+    
+    // The expiry is checked again in case a key was taken over since it was selected
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE tx_id IN (:txIds) AND expires_at < :cutoff",
+           nativeQuery = true)
+    int deleteExpired(@Param("txIds") Collection<String> txIds, @Param("cutoff") LocalDateTime cutoff);
+    
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT k FROM IdempotencyKey k WHERE k.txId = :txId")
+    Optional<IdempotencyKey> lockByTxId(@Param("txId") String txId);
+}
@@ -0,0 +1,119 @@
+package paymentapp.payment.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import paymentapp.payment.entity.LedgerEntry;
+import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.entity.TransactionStatusEntity;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+// Plain JDBC batch inserts for the append-only tables. IDENTITY keys stop
+// Hibernate from batching these inserts, so workers write them through here;
+// group-committed ingress writes its status rows the same way.
+@Repository
+@RequiredArgsConstructor
+public class JdbcBatchRepository {
+    
+    private static final String INSERT_LEDGER_ENTRY =
+        "INSERT INTO ledger_entries (tx_id, account_id, leg_type, amount, status, description, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String INSERT_OUTBOX_EVENT =
+        "INSERT INTO outbox (tx_id, event_type, payload, payload_bytes, partition_key, processed, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, false, ?)";
+    
+    private static final String INSERT_TRANSACTION_STATUS =
+        "INSERT INTO transaction_status (tx_id, source_account, destination_account, amount, status, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String UPDATE_STATUS_FROM =
+        "UPDATE transaction_status SET status = ?, error_message = COALESCE(?, error_message), updated_at = ? " +
+        "WHERE tx_id = ? AND status IN (%s)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    public void insertLedgerEntries(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_LEDGER_ENTRY, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.getTxId());
+            ps.setString(2, entry.getAccountId());
+            ps.setString(3, entry.getLegType().name());
+            ps.setBigDecimal(4, entry.getAmount());
+            ps.setString(5, entry.getStatus().name());
+            ps.setString(6, entry.getDescription());
+            ps.setTimestamp(7, now);
+        });
+    }
+    
+    public void insertTransactionStatuses(List<TransactionStatusEntity> statuses) {
+        if (statuses.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION_STATUS, statuses, statuses.size(), (ps, status) -> {
+            ps.setString(1, status.getTxId());
+            ps.setString(2, status.getSourceAccount());
+            ps.setString(3, status.getDestinationAccount());
+            ps.setBigDecimal(4, status.getAmount());
+            ps.setString(5, status.getStatus().name());
+            ps.setTimestamp(6, now);
+            ps.setTimestamp(7, now);
+        });
+    }
+    
+    // Batched TransactionStatusRepository.transition: one flag per txId, true
+    // where the transfer was in a predecessor of status and has moved to it
+    public boolean[] transitionStatuses(List<String> txIds, TransactionStatusEntity.Status status, String errorMessage) {
+        if (txIds.isEmpty()) {
+            return new boolean[0];
+        }
+        List<TransactionStatusEntity.Status> predecessors = List.copyOf(status.predecessors());
+        if (predecessors.isEmpty()) {
+            throw new IllegalArgumentException("No transition leads to " + status);
+        }
+        String sql = UPDATE_STATUS_FROM.formatted(String.join(", ", Collections.nCopies(predecessors.size(), "?")));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[][] counts = jdbcTemplate.batchUpdate(sql, txIds, txIds.size(), (ps, txId) -> {
+            int index = 1;
+            ps.setString(index++, status.name());
+            ps.setString(index++, errorMessage);
+            ps.setTimestamp(index++, now);
+            ps.setString(index++, txId);
+            for (TransactionStatusEntity.Status predecessor : predecessors) {
+                ps.setString(index++, predecessor.name());
+            }
+        });
+        
+        boolean[] applied = new boolean[txIds.size()];
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                applied[i++] = count > 0;
+            }
+        }
+        return applied;
+    }
+    
+    public void insertOutboxEvents(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX_EVENT, events, events.size(), (ps, event) -> {
+            ps.setString(1, event.getTxId());
+            ps.setString(2, event.getEventType());
+            ps.setString(3, event.getPayload());
+            ps.setBytes(4, event.getPayloadBytes());
+            ps.setString(5, event.getPartitionKey());
+            ps.setTimestamp(6, now);
+        });
+    }
+}
@@ -7,16 +7,54 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import paymentapp.payment.entity.LedgerEntry;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
     List<LedgerEntry> findByTxIdOrderByCreatedAt(String txId);
     
-    @Query("SELECT l FROM LedgerEntry l WHERE l.legType = 'HOLD' " +
-           "AND l.status = 'SUCCESS' AND l.createdAt < :cutoffTime " +
-           "AND NOT EXISTS (SELECT 1 FROM LedgerEntry l2 WHERE l2.txId = l.txId " +
-           "AND l2.accountId = l.accountId AND l2.legType IN ('DEBIT', 'RELEASE'))")
-    List<LedgerEntry> findOrphanedHolds(@Param("cutoffTime") LocalDateTime cutoffTime);
+    Optional<LedgerEntry> findByTxIdAndAccountIdAndLegType(String txId, String accountId,
+            LedgerEntry.LegType legType);
+    
+    // Single probe on uk_tx_account_leg; selects no entity
+    boolean existsByTxIdAndAccountIdAndLegTypeAndStatus(String txId, String accountId,
+            LedgerEntry.LegType legType, LedgerEntry.TransactionStatus status);
+    
+    // Next keyset page of successful holds; walks idx_leg_type_status in id order
+    @Query(value = "SELECT * FROM ledger_entries WHERE leg_type = 'HOLD' AND status = 'SUCCESS' " +
+                   "AND id > :afterId ORDER BY id LIMIT :limit",
+           nativeQuery = true)
+    List<LedgerEntry> findHoldsAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+    
+    // Holds among the given ids that already have a successful DEBIT or any RELEASE
+    // leg. The FAILED DEBIT a failed commit writes leaves the hold open; the
+    // reconciler's own RELEASE is written FAILED, so RELEASE counts whatever its status.
+    @Query(value = "SELECT h.id FROM ledger_entries h WHERE h.id IN (:ids) AND EXISTS (" +
+                   "SELECT 1 FROM ledger_entries l WHERE l.tx_id = h.tx_id AND l.account_id = h.account_id " +
+                   "AND (l.leg_type = 'RELEASE' OR (l.leg_type = 'DEBIT' AND l.status = 'SUCCESS')))",
+           nativeQuery = true)
+    List<Long> findSettledHoldIds(@Param("ids") Collection<Long> ids);
+    
+    @Query(value = "SELECT COUNT(*) FROM ledger_entries WHERE leg_type = 'HOLD' AND status = 'SUCCESS' " +
+                   "AND id > :afterId AND created_at < :cutoffTime",
+           nativeQuery = true)
+    long countHoldsAfter(@Param("afterId") long afterId, @Param("cutoffTime") LocalDateTime cutoffTime);
+    
+    // Over an id range, so idx_account_leg_status only reads the holds in it
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM ledger_entries WHERE account_id = :accountId " +
+                   "AND leg_type = 'HOLD' AND status = 'SUCCESS' AND id > :afterId AND id <= :upToId",
+           nativeQuery = true)
+    BigDecimal sumSuccessfulHolds(@Param("accountId") String accountId, @Param("afterId") long afterId,
+                                  @Param("upToId") long upToId);
+    
+    // Walks idx_account_created back from the cutoff and stops at the first hold
+    @Query(value = "SELECT id FROM ledger_entries WHERE account_id = :accountId AND created_at < :cutoffTime " +
+                   "AND leg_type = 'HOLD' AND status = 'SUCCESS' ORDER BY created_at DESC, id DESC LIMIT 1",
+           nativeQuery = true)
+    Optional<Long> findLastHoldIdBefore(@Param("accountId") String accountId,
+                                        @Param("cutoffTime") LocalDateTime cutoffTime);
 }
\ No newline at end of file
@@ -9,14 +9,37 @@ import org.springframework.stereotype.Repository;
 import paymentapp.payment.entity.OutboxEvent;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
-    List<OutboxEvent> findByProcessedFalseOrderByCreatedAt();
+    
+    // Claims a bounded page of unprocessed events. Rows locked by another relay
+    // instance are skipped, so concurrent instances work on disjoint pages.
+    @Query(value = "SELECT * FROM outbox WHERE processed = false " +
+                   "ORDER BY created_at, id LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<OutboxEvent> claimUnprocessedBatch(@Param("limit") int limit);
+    
+    long countByProcessedFalse();
+    
+    // Leftmost entry of idx_processed_created for processed = false
+    @Query("SELECT MIN(o.createdAt) FROM OutboxEvent o WHERE o.processed = false")
+    LocalDateTime findOldestUnprocessed();
     
     @Modifying
     @Query("UPDATE OutboxEvent o SET o.processed = true, o.processedAt = :processedAt " +
-           "WHERE o.id = :id")
-    int markAsProcessed(@Param("id") Long id, @Param("processedAt") LocalDateTime processedAt);
+           "WHERE o.id IN :ids")
+    int markAsProcessed(@Param("ids") Collection<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+    
+    // Uses idx_processed_created; ordered so consecutive chunks cover consecutive time ranges
+    @Query(value = "SELECT * FROM outbox WHERE processed = true AND created_at < :cutoff " +
+                   "ORDER BY created_at, id LIMIT :limit",
+           nativeQuery = true)
+    List<OutboxEvent> findArchivable(@Param("cutoff") LocalDateTime cutoff, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("DELETE FROM OutboxEvent o WHERE o.id IN :ids AND o.processed = true")
+    int deleteProcessed(@Param("ids") Collection<Long> ids);
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package paymentapp.payment.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import paymentapp.payment.entity.ProjectionCheckpoint;
+
+import java.util.List;
+
+@Repository
+public interface ProjectionCheckpointRepository 
+        extends JpaRepository<ProjectionCheckpoint, ProjectionCheckpoint.CheckpointId> {
+    List<ProjectionCheckpoint> findByAccountId(String accountId);
+    
+    // Never moves a watermark backwards
+    @Modifying
+    @Query(value = "INSERT INTO projection_checkpoints (account_id, topic, partition_id, applied_offset) " +
+                   "VALUES (:accountId, :topic, :partitionId, :offset) " +
+                   "ON DUPLICATE KEY UPDATE applied_offset = GREATEST(applied_offset, VALUES(applied_offset))",
+           nativeQuery = true)
+    int advance(@Param("accountId") String accountId, @Param("topic") String topic,
+                @Param("partitionId") int partitionId, @Param("offset") long offset);
+}
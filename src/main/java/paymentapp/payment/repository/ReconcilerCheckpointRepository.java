@@ -0,0 +1,17 @@
+package paymentapp.payment.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import paymentapp.payment.entity.ReconcilerCheckpoint;
+
+@Repository
+public interface ReconcilerCheckpointRepository extends JpaRepository<ReconcilerCheckpoint, String> {
+    @Modifying
+    @Query(value = "INSERT INTO reconciler_checkpoints (name, last_id) VALUES (:name, :lastId) " +
+                   "ON DUPLICATE KEY UPDATE last_id = GREATEST(last_id, VALUES(last_id))",
+           nativeQuery = true)
+    int advance(@Param("name") String name, @Param("lastId") long lastId);
+}
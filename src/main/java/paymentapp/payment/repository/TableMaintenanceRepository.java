@@ -0,0 +1,47 @@
+package paymentapp.payment.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Housekeeping statements that JPA has no way to express: table statistics
+// and partition maintenance on the current shard's schema.
+@Repository
+@RequiredArgsConstructor
+public class TableMaintenanceRepository {
+    
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_]+");
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    // Estimated row count and on-disk size (data plus indexes) from InnoDB statistics
+    public long[] tableStats(String table) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COALESCE(TABLE_ROWS, 0), COALESCE(DATA_LENGTH, 0) + COALESCE(INDEX_LENGTH, 0) " +
+            "FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?",
+            (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)},
+            table);
+    }
+    
+    // Partitions of a table RANGE-partitioned on TO_DAYS(column) whose upper
+    // bound is today or earlier, i.e. every row in them is already before today
+    public List<String> partitionsEndingBeforeToday(String table) {
+        return jdbcTemplate.queryForList(
+            "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_METHOD = 'RANGE' " +
+            "AND PARTITION_DESCRIPTION <> 'MAXVALUE' " +
+            "AND CAST(PARTITION_DESCRIPTION AS UNSIGNED) <= TO_DAYS(CURRENT_DATE) " +
+            "ORDER BY PARTITION_ORDINAL_POSITION",
+            String.class, table);
+    }
+    
+    public void dropPartition(String table, String partition) {
+        if (!IDENTIFIER.matcher(table).matches() || !IDENTIFIER.matcher(partition).matches()) {
+            throw new IllegalArgumentException("Invalid table or partition name: " + table + "." + partition);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " DROP PARTITION " + partition);
+    }
+}
@@ -1,13 +1,41 @@
 package paymentapp.payment.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import paymentapp.payment.entity.TransactionStatusEntity;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface TransactionStatusRepository extends JpaRepository<TransactionStatusEntity, String> {
     List<TransactionStatusEntity> findBySourceAccountOrderByCreatedAtDesc(String sourceAccount);
     List<TransactionStatusEntity> findByDestinationAccountOrderByCreatedAtDesc(String destinationAccount);
-}
\ No newline at end of file
+    
+    // The error message is only ever set, never cleared, by a transition
+    @Modifying
+    @Query(value = "UPDATE transaction_status SET status = :status, " +
+                   "error_message = COALESCE(:errorMessage, error_message), updated_at = CURRENT_TIMESTAMP " +
+                   "WHERE tx_id = :txId AND status IN (:predecessors)",
+           nativeQuery = true)
+    int updateStatusFrom(@Param("txId") String txId, @Param("status") String status,
+                         @Param("errorMessage") String errorMessage,
+                         @Param("predecessors") Collection<String> predecessors);
+    
+    // Moves the transfer to status if it is in one of the status's predecessors.
+    // False when it is already there or past it, e.g. for a redelivered event.
+    default boolean transition(String txId, TransactionStatusEntity.Status status) {
+        return transition(txId, status, null);
+    }
+    
+    default boolean transition(String txId, TransactionStatusEntity.Status status, String errorMessage) {
+        if (status.predecessors().isEmpty()) {
+            throw new IllegalArgumentException("No transition leads to " + status);
+        }
+        return updateStatusFrom(txId, status.name(), errorMessage,
+            status.predecessors().stream().map(Enum::name).toList()) > 0;
+    }
+}
@@ -0,0 +1,103 @@
+package paymentapp.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import paymentapp.payment.cache.BalanceCache;
+import paymentapp.payment.cache.BalanceSnapshot;
+import paymentapp.payment.repository.BalanceRepository;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Read-through cache in front of the balances row. Entries are refreshed by the
+// balance projector after each applied delta and expire after a short TTL, which
+// bounds staleness for writes made outside the projector (holds, hold-engine flushes).
+@Service
+@Slf4j
+public class BalanceReadService {
+    
+    private final BalanceCache balanceCache;
+    private final BalanceRepository balanceRepository;
+    private final StripedBalanceService stripedBalanceService;
+    private final ShardRouter shardRouter;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer hitTimer;
+    private final Timer missTimer;
+    
+    public BalanceReadService(BalanceCache balanceCache,
+            BalanceRepository balanceRepository,
+            StripedBalanceService stripedBalanceService,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry) {
+        this.balanceCache = balanceCache;
+        this.balanceRepository = balanceRepository;
+        this.stripedBalanceService = stripedBalanceService;
+        this.shardRouter = shardRouter;
+        this.hits = meterRegistry.counter("payment.balance.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("payment.balance.cache.requests", "result", "miss");
+        this.hitTimer = meterRegistry.timer("payment.balance.cache.latency", "result", "hit");
+        this.missTimer = meterRegistry.timer("payment.balance.cache.latency", "result", "miss");
+        Gauge.builder("payment.balance.cache.hit.ratio", this, BalanceReadService::hitRatio)
+            .register(meterRegistry);
+    }
+    
+    public Optional<BalanceSnapshot> getBalance(String accountId) {
+        long startNanos = System.nanoTime();
+        Optional<BalanceSnapshot> cached = balanceCache.get(accountId);
+        if (cached.isPresent()) {
+            hits.increment();
+            hitTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            return cached;
+        }
+        
+        misses.increment();
+        Optional<BalanceSnapshot> loaded = load(accountId);
+        loaded.ifPresent(balanceCache::putIfNewer);
+        missTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        return loaded;
+    }
+    
+    // Reloads the entry once the caller's transaction has committed, so the
+    // cache never sees uncommitted balances
+    public void refreshAfterCommit(String accountId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(accountId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh(accountId);
+            }
+        });
+    }
+    
+    private void refresh(String accountId) {
+        try {
+            load(accountId).ifPresent(balanceCache::putIfNewer);
+        } catch (Exception e) {
+            // Stale entries still expire on their own
+            balanceCache.evict(accountId);
+            log.warn("Error refreshing cached balance for account: {}", accountId, e);
+        }
+    }
+    
+    // Reads only the balance columns, without the Account association
+    private Optional<BalanceSnapshot> load(String accountId) {
+        return shardRouter.inNewTransaction(accountId, status -> balanceRepository.findSnapshot(accountId)
+            .map(stripedBalanceService::includeSlots));
+    }
+    
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
@@ -0,0 +1,260 @@
+package paymentapp.payment.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.debezium.engine.ChangeEvent;
+import io.debezium.engine.DebeziumEngine;
+import io.debezium.engine.format.Json;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.repository.OutboxEventRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Tails the MySQL binlog for inserts into the outbox table and forwards them
+// to Kafka. Replaces the polling OutboxRelay when payment.outbox.relay-mode=cdc.
+@Component
+@ConditionalOnProperty(name = "payment.outbox.relay-mode", havingValue = "cdc")
+@RequiredArgsConstructor
+@Slf4j
+public class DebeziumOutboxPublisher implements SmartLifecycle {
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxPublisher outboxPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "debezium-outbox"));
+
+    @Value("${payment.debezium.offset-storage}")
+    private String offsetStorage;
+
+    @Value("${payment.debezium.database-history}")
+    private String databaseHistory;
+
+    @Value("${payment.debezium.hostname:localhost}")
+    private String hostname;
+
+    @Value("${payment.debezium.port:3306}")
+    private int port;
+
+    @Value("${payment.debezium.database:payment_db}")
+    private String database;
+
+    @Value("${payment.debezium.username}")
+    private String username;
+
+    @Value("${payment.debezium.password}")
+    private String password;
+
+    @Value("${payment.debezium.server-id:5401}")
+    private long serverId;
+
+    @Value("${payment.debezium.dead-letter-topic:outbox.dead-letter}")
+    private String deadLetterTopic;
+
+    private DebeziumEngine<ChangeEvent<String, String>> engine;
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        try {
+            createParentDirectories(offsetStorage);
+            createParentDirectories(databaseHistory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create Debezium storage directories", e);
+        }
+
+        engine = DebeziumEngine.create(Json.class)
+                .using(connectorProperties())
+                .notifying(this::handleBatch)
+                .build();
+        running = true;
+        executor.execute(engine);
+        log.info("Debezium outbox publisher started: database={}, offsets={}", database, offsetStorage);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            if (engine != null) {
+                engine.close();
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Debezium outbox publisher did not stop within 30 seconds");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Error stopping Debezium outbox publisher", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private Properties connectorProperties() {
+        Properties props = new Properties();
+        props.setProperty("name", "outbox-connector");
+        props.setProperty("connector.class", "io.debezium.connector.mysql.MySqlConnector");
+        props.setProperty("offset.storage", "org.apache.kafka.connect.storage.FileOffsetBackingStore");
+        props.setProperty("offset.storage.file.filename", offsetStorage);
+        props.setProperty("offset.flush.interval.ms", "1000");
+        props.setProperty("schema.history.internal", "io.debezium.storage.file.history.FileSchemaHistory");
+        props.setProperty("schema.history.internal.file.filename", databaseHistory);
+        props.setProperty("database.hostname", hostname);
+        props.setProperty("database.port", String.valueOf(port));
+        props.setProperty("database.user", username);
+        props.setProperty("database.password", password);
+        props.setProperty("database.server.id", String.valueOf(serverId));
+        props.setProperty("topic.prefix", "payment-outbox");
+        props.setProperty("database.include.list", database);
+        props.setProperty("table.include.list", database + ".outbox");
+        // The initial snapshot picks up rows that were written before the first start;
+        // already processed ones are filtered out below
+        props.setProperty("snapshot.mode", "initial");
+        props.setProperty("converter.schemas.enable", "false");
+        props.setProperty("binary.handling.mode", "base64");
+        return props;
+    }
+
+    private void handleBatch(List<ChangeEvent<String, String>> records,
+            DebeziumEngine.RecordCommitter<ChangeEvent<String, String>> committer) throws InterruptedException {
+        List<OutboxEvent> inserts = new ArrayList<>();
+        List<ChangeEvent<String, String>> unreadable = new ArrayList<>();
+        for (ChangeEvent<String, String> record : records) {
+            try {
+                OutboxEvent event = toOutboxEvent(record.value());
+                if (event != null) {
+                    inserts.add(event);
+                }
+            } catch (Exception e) {
+                log.error("Error parsing outbox change event, dead-lettering it: {}", record.value(), e);
+                unreadable.add(record);
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            publishUntilAcknowledged(inserts);
+        }
+        for (ChangeEvent<String, String> record : unreadable) {
+            deadLetterUntilAcknowledged(record);
+        }
+
+        // Offsets only advance once every insert in the batch reached Kafka
+        for (ChangeEvent<String, String> record : records) {
+            committer.markProcessed(record);
+        }
+        committer.markBatchFinished();
+    }
+
+    private void publishUntilAcknowledged(List<OutboxEvent> events) throws InterruptedException {
+        List<OutboxEvent> pending = events;
+        long backoffMs = 500;
+
+        while (true) {
+            List<Long> publishedIds = outboxPublisher.publish(pending);
+            if (!publishedIds.isEmpty()) {
+                // Keeps the processed flag meaningful for archival; this is a primary-key
+                // update, not a scan of idx_processed_created
+                transactionTemplate.executeWithoutResult(status ->
+                    outboxEventRepository.markAsProcessed(publishedIds, LocalDateTime.now()));
+            }
+
+            Set<Long> published = new HashSet<>(publishedIds);
+            pending = pending.stream()
+                    .filter(event -> !published.contains(event.getId()))
+                    .toList();
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (!running) {
+                throw new InterruptedException("Publisher stopped with " + pending.size() + " unpublished events");
+            }
+
+            log.warn("Retrying {} unpublished outbox events in {} ms", pending.size(), backoffMs);
+            Thread.sleep(backoffMs);
+            backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+        }
+    }
+
+    // A record that cannot be parsed must not be dropped: the offset would move
+    // past it and its event would never be published
+    private void deadLetterUntilAcknowledged(ChangeEvent<String, String> record) throws InterruptedException {
+        long backoffMs = 500;
+        while (!outboxPublisher.publishDeadLetter(deadLetterTopic, record.key(), record.value())) {
+            if (!running) {
+                throw new InterruptedException("Publisher stopped with an unacknowledged dead letter");
+            }
+            log.warn("Retrying dead letter in {} ms", backoffMs);
+            Thread.sleep(backoffMs);
+            backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+        }
+    }
+
+    private OutboxEvent toOutboxEvent(String value) throws IOException {
+        if (value == null) {
+            return null; // tombstone
+        }
+
+        JsonNode root = objectMapper.readTree(value);
+        JsonNode change = root.has("schema") && root.has("payload") ? root.get("payload") : root;
+        JsonNode after = change.path("after");
+        if (after.isMissingNode() || after.isNull()) {
+            return null;
+        }
+
+        // Forward inserts, plus snapshot reads of rows that were never published
+        String op = change.path("op").asText();
+        boolean insert = "c".equals(op);
+        boolean unpublishedSnapshotRow = "r".equals(op) && !after.path("processed").asBoolean();
+        if (!insert && !unpublishedSnapshotRow) {
+            return null;
+        }
+
+        OutboxEvent event = new OutboxEvent();
+        event.setId(after.path("id").asLong());
+        event.setTxId(after.path("tx_id").asText());
+        event.setEventType(after.path("event_type").asText());
+        // binary.handling.mode=base64 renders payload_bytes as a base64 string
+        JsonNode payload = after.path("payload");
+        JsonNode payloadBytes = after.path("payload_bytes");
+        event.setPayload(payload.isTextual() ? payload.asText() : null);
+        event.setPayloadBytes(payloadBytes.isTextual() ? Base64.getDecoder().decode(payloadBytes.asText()) : null);
+        event.setPartitionKey(after.path("partition_key").asText());
+        return event;
+    }
+
+    private static void createParentDirectories(String file) throws IOException {
+        Path parent = Path.of(file).toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package paymentapp.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// Collects items submitted concurrently into micro-batches, one lane (and one
+// committer thread) per key. A batch is cut when it reaches maxBatchSize or
+// lingerMicros after its first item arrived, whichever comes first. The
+// handler must complete every item's future; any it leaves open when it
+// throws are failed with that exception.
+@Slf4j
+public class GroupCommitBatcher<T, R> {
+    
+    public record Pending<T, R>(T item, CompletableFuture<R> future) {
+    }
+    
+    private final String name;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final int queueCapacity;
+    private final BiConsumer<Integer, List<Pending<T, R>>> handler;
+    private final Map<Integer, Lane> lanes = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+    
+    public GroupCommitBatcher(String name, int maxBatchSize, long lingerMicros, int queueCapacity,
+            BiConsumer<Integer, List<Pending<T, R>>> handler) {
+        this.name = name;
+        this.maxBatchSize = maxBatchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.queueCapacity = queueCapacity;
+        this.handler = handler;
+    }
+    
+    // Blocks while the lane's queue is full, which pushes back on callers
+    public CompletableFuture<R> submit(int key, T item) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException(name + " batcher is stopped");
+        }
+        Pending<T, R> pending = new Pending<>(item, new CompletableFuture<>());
+        lanes.computeIfAbsent(key, Lane::new).queue.put(pending);
+        return pending.future();
+    }
+    
+    public void stop() {
+        running = false;
+        lanes.values().forEach(lane -> lane.thread.interrupt());
+    }
+    
+    private final class Lane implements Runnable {
+        private final int key;
+        private final BlockingQueue<Pending<T, R>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final Thread thread;
+        
+        private Lane(int key) {
+            this.key = key;
+            this.thread = new Thread(this, name + "-" + key);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+        
+        @Override
+        public void run() {
+            List<Pending<T, R>> batch = new ArrayList<>(maxBatchSize);
+            while (running) {
+                try {
+                    batch.add(queue.take());
+                    long deadline = System.nanoTime() + lingerNanos;
+                    while (batch.size() < maxBatchSize) {
+                        // Whatever is already queued joins without waiting
+                        if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                            continue;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        Pending<T, R> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    commit(batch);
+                    batch.clear();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            
+            // Callers still waiting on a stopped lane, including a batch that was
+            // being collected, get an answer
+            queue.drainTo(batch);
+            batch.forEach(pending -> pending.future().completeExceptionally(
+                new IllegalStateException(name + " batcher stopped")));
+        }
+        
+        private void commit(List<Pending<T, R>> batch) {
+            try {
+                handler.accept(key, batch);
+            } catch (Throwable e) {
+                log.error("{} batch of {} failed on lane {}", name, batch.size(), key, e);
+                batch.forEach(pending -> pending.future().completeExceptionally(e));
+            }
+        }
+    }
+}
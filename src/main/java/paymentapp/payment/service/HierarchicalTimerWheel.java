@@ -0,0 +1,119 @@
+package paymentapp.payment.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Hierarchical hashed timer wheel. Level 0 has wheelSize buckets of one tick
+// each, and a bucket of level n spans a full turn of level n-1. A timer sits in
+// the lowest level whose turn still covers its deadline and is moved down a
+// level each time its bucket comes round, so schedule, cancel and expiry cost
+// O(1) per timer however far away the deadline is. Not thread safe.
+public class HierarchicalTimerWheel<K, V> {
+    
+    private static final int LEVELS = 4;
+    
+    private final long tickMs;
+    private final int wheelSize;
+    private final long[] ticksPerBucket = new long[LEVELS];
+    private final List<List<Set<K>>> levels = new ArrayList<>();
+    private final Map<K, Timer<V>> timers = new HashMap<>();
+    private long currentTick;
+    
+    public HierarchicalTimerWheel(long tickMs, int wheelSize, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.currentTick = startMs / tickMs;
+        long span = 1;
+        for (int level = 0; level < LEVELS; level++) {
+            ticksPerBucket[level] = span;
+            span *= wheelSize;
+            List<Set<K>> buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new HashSet<>());
+            }
+            levels.add(buckets);
+        }
+    }
+    
+    // Replaces any timer already scheduled under the key; a deadline in the
+    // past fires on the next tick
+    public void schedule(K key, V value, long deadlineMs) {
+        cancel(key);
+        long deadlineTick = Math.max(Math.floorDiv(deadlineMs + tickMs - 1, tickMs), currentTick + 1);
+        place(key, new Timer<>(value, deadlineTick));
+    }
+    
+    public boolean cancel(K key) {
+        Timer<V> timer = timers.remove(key);
+        if (timer == null) {
+            return false;
+        }
+        levels.get(timer.level).get(timer.bucket).remove(key);
+        return true;
+    }
+    
+    // Moves the wheel up to the given time and returns the values of every
+    // timer whose deadline has passed
+    public List<V> advanceTo(long nowMs) {
+        List<V> expired = new ArrayList<>();
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if (currentTick % ticksPerBucket[level] == 0) {
+                    cascade(level, (int) ((currentTick / ticksPerBucket[level]) % wheelSize));
+                }
+            }
+            Set<K> due = swap(0, (int) (currentTick % wheelSize));
+            for (K key : due) {
+                expired.add(timers.remove(key).value);
+            }
+        }
+        return expired;
+    }
+    
+    public int size() {
+        return timers.size();
+    }
+    
+    private void cascade(int level, int bucket) {
+        for (K key : swap(level, bucket)) {
+            place(key, timers.get(key));
+        }
+    }
+    
+    private Set<K> swap(int level, int bucket) {
+        List<Set<K>> buckets = levels.get(level);
+        Set<K> keys = buckets.get(bucket);
+        buckets.set(bucket, new HashSet<>());
+        return keys;
+    }
+    
+    private void place(K key, Timer<V> timer) {
+        long delta = timer.deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= ticksPerBucket[level + 1]) {
+            level++;
+        }
+        timer.level = level;
+        timer.bucket = (int) ((timer.deadlineTick / ticksPerBucket[level]) % wheelSize);
+        levels.get(level).get(timer.bucket).add(key);
+        timers.put(key, timer);
+    }
+    
+    private static final class Timer<V> {
+        private final V value;
+        private final long deadlineTick;
+        private int level;
+        private int bucket;
+        
+        private Timer(V value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package paymentapp.payment.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+// Deadlines of the holds this instance has placed. The hold worker arms a
+// timer once the hold commits, credit and commit disarm it, and the reconciler
+// releases whatever expires. Only used when payment.reconciler.mode is timer.
+@Component
+public class HoldExpiryTimer {
+    
+    private final HierarchicalTimerWheel<String, PendingHold> wheel;
+    private final boolean enabled;
+    private final long holdTimeoutMs;
+    
+    public HoldExpiryTimer(@Value("${payment.reconciler.mode:scan}") String mode,
+            @Value("${payment.reconciler.hold-timeout-minutes:5}") int holdTimeoutMinutes,
+            @Value("${payment.reconciler.timer.tick-ms:100}") long tickMs,
+            @Value("${payment.reconciler.timer.wheel-size:512}") int wheelSize,
+            MeterRegistry meterRegistry) {
+        this.enabled = "timer".equals(mode);
+        this.holdTimeoutMs = holdTimeoutMinutes * 60_000L;
+        this.wheel = new HierarchicalTimerWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+        Gauge.builder("payment.reconciler.timer.active", this, HoldExpiryTimer::size)
+            .register(meterRegistry);
+    }
+    
+    public void armAfterCommit(String txId, String accountId) {
+        if (!enabled) {
+            return;
+        }
+        long deadlineMs = System.currentTimeMillis() + holdTimeoutMs;
+        afterCommit(() -> arm(txId, accountId, deadlineMs));
+    }
+    
+    public void disarmAfterCommit(String txId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> disarm(txId));
+    }
+    
+    public synchronized void arm(String txId, String accountId, long deadlineMs) {
+        wheel.schedule(txId, new PendingHold(txId, accountId), deadlineMs);
+    }
+    
+    public synchronized void disarm(String txId) {
+        wheel.cancel(txId);
+    }
+    
+    public synchronized List<PendingHold> expire(long nowMs) {
+        return wheel.advanceTo(nowMs);
+    }
+    
+    private synchronized int size() {
+        return wheel.size();
+    }
+    
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    public record PendingHold(String txId, String accountId) {
+    }
+}
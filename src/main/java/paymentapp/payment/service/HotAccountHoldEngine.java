@@ -0,0 +1,263 @@
+package paymentapp.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import paymentapp.payment.entity.Balance;
+import paymentapp.payment.entity.HoldEngineCheckpoint;
+import paymentapp.payment.repository.BalanceRepository;
+import paymentapp.payment.repository.HoldEngineCheckpointRepository;
+import paymentapp.payment.repository.LedgerEntryRepository;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Decides holds for configured hot accounts in memory instead of with a
+// conditional UPDATE on their balances row. Committed holds are written back
+// to balances as aggregated deltas by a background flush. State is rebuilt
+// from balances plus the ledger's holds past the checkpoint's mark whenever
+// an account is (re)loaded.
+@Component
+@Slf4j
+public class HotAccountHoldEngine {
+
+    private final BalanceRepository balanceRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final HoldEngineCheckpointRepository checkpointRepository;
+    private final ShardRouter shardRouter;
+    private final boolean enabled;
+    private final Set<String> hotAccounts;
+    private final long ledgerLagMs;
+
+    private final Map<String, AccountHoldState> states = new ConcurrentHashMap<>();
+
+    public HotAccountHoldEngine(BalanceRepository balanceRepository,
+            LedgerEntryRepository ledgerEntryRepository,
+            HoldEngineCheckpointRepository checkpointRepository,
+            ShardRouter shardRouter,
+            @Value("${payment.hold-engine.enabled:false}") boolean enabled,
+            @Value("${payment.hold-engine.accounts:}") String[] hotAccounts,
+            @Value("${payment.reconciler.hold-timeout-minutes:5}") int holdTimeoutMinutes) {
+        this.balanceRepository = balanceRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.hotAccounts = Set.copyOf(Arrays.asList(hotAccounts));
+        this.ledgerLagMs = holdTimeoutMinutes * 60_000L;
+    }
+
+    public boolean owns(String accountId) {
+        return enabled && hotAccounts.contains(accountId);
+    }
+
+    // Reserves the amount if it is available. Must be called inside the worker
+    // transaction: the reservation is undone if that transaction rolls back and
+    // only queued for write-back once it commits.
+    public boolean tryHold(String accountId, BigDecimal amount) {
+        AccountHoldState state = states.computeIfAbsent(accountId, this::load);
+        long cents = toCents(amount);
+
+        while (true) {
+            long available = state.available.get();
+            if (available < cents) {
+                return false;
+            }
+            if (state.available.compareAndSet(available, available - cents)) {
+                state.openHold.addAndGet(cents);
+                break;
+            }
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    state.pendingHolds.addAndGet(cents);
+                } else {
+                    state.openHold.addAndGet(-cents);
+                    state.available.addAndGet(cents);
+                }
+            }
+        });
+        return true;
+    }
+
+    // Releases are rare (reconciler only) and are written to balances directly
+    // by the caller; this keeps the in-memory view in step once they commit.
+    public void onHoldReleased(String accountId, BigDecimal amount) {
+        AccountHoldState state = states.get(accountId);
+        if (state == null) {
+            return;
+        }
+        long cents = toCents(amount);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    state.openHold.addAndGet(-cents);
+                }
+            });
+        } else {
+            state.openHold.addAndGet(-cents);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.hold-engine.flush-interval-ms:200}")
+    public void flush() {
+        states.forEach(this::flushAccount);
+    }
+
+    // Advances each hot account's ledger mark, so the holds a load sums stay
+    // those of the last few minutes however long the account has been owned.
+    // Runs for loaded and unloaded accounts alike; instances racing on the same
+    // mark are settled by advanceLedgerId.
+    @Scheduled(fixedDelayString = "${payment.hold-engine.checkpoint-interval-ms:60000}")
+    public void advanceCheckpoints() {
+        if (!enabled) {
+            return;
+        }
+        for (String accountId : hotAccounts) {
+            try {
+                shardRouter.inNewTransaction(accountId, status -> {
+                    checkpointRepository.findById(accountId).ifPresent(checkpoint ->
+                        advanceCheckpoint(accountId, checkpoint.getLedgerId()));
+                    return null;
+                });
+            } catch (Exception e) {
+                log.error("Error advancing hold checkpoint for account: {}", accountId, e);
+            }
+        }
+    }
+
+    // The mark only moves, and the holds it passes only leave the applied total,
+    // which holds whether or not they have been flushed yet: the load's
+    // ledger-minus-applied difference stays the same either way
+    private void advanceCheckpoint(String accountId, long fromId) {
+        long toId = settledHoldId(accountId);
+        if (toId <= fromId) {
+            return;
+        }
+        BigDecimal passed = ledgerEntryRepository.sumSuccessfulHolds(accountId, fromId, toId);
+        if (checkpointRepository.advanceLedgerId(accountId, fromId, toId, passed) > 0) {
+            log.debug("Advanced hold checkpoint: account={}, ledgerId={}", accountId, toId);
+        }
+    }
+
+    // Last hold older than the hold timeout, which no transaction outlives: ids
+    // are taken at insert but only show up at commit, so a mark any closer
+    // could pass a hold that commits after it
+    private long settledHoldId(String accountId) {
+        LocalDateTime cutoffTime = LocalDateTime.now().minus(Duration.ofMillis(ledgerLagMs));
+        return ledgerEntryRepository.findLastHoldIdBefore(accountId, cutoffTime).orElse(0L);
+    }
+
+    // Called with the accounts of partitions the hold worker lost: whoever owns
+    // them next rebuilds the state from the database. Flushed before removal;
+    // a hold committed in between is recovered from the ledger on the next load.
+    public void evict(Collection<String> accountIds) {
+        for (String accountId : accountIds) {
+            AccountHoldState state = states.get(accountId);
+            if (state != null) {
+                flushAccount(accountId, state);
+                states.remove(accountId);
+            }
+        }
+    }
+
+    // A lock rather than synchronized: the JDBC call inside would otherwise pin
+    // a virtual thread to its carrier
+    private void flushAccount(String accountId, AccountHoldState state) {
+        state.flushLock.lock();
+        try {
+            long cents = state.pendingHolds.getAndSet(0);
+            if (cents == 0) {
+                return;
+            }
+
+            BigDecimal amount = fromCents(cents);
+            try {
+                shardRouter.inNewTransaction(accountId, status -> {
+                    balanceRepository.applyHolds(accountId, amount);
+                    checkpointRepository.addAppliedHolds(accountId, amount);
+                    return null;
+                });
+                log.debug("Flushed hold delta: account={}, amount={}", accountId, amount);
+            } catch (Exception e) {
+                state.pendingHolds.addAndGet(cents);
+                log.error("Error flushing hold delta for account: {}", accountId, e);
+            }
+        } finally {
+            state.flushLock.unlock();
+        }
+    }
+
+    private AccountHoldState load(String accountId) {
+        return shardRouter.inNewTransaction(accountId, status -> {
+            Balance balance = balanceRepository.findById(accountId)
+                .orElseThrow(() -> new IllegalStateException("No balance row for hot account " + accountId));
+
+            // Holds that reached the ledger but not balances before a crash
+            BigDecimal unflushed = BigDecimal.ZERO;
+            HoldEngineCheckpoint checkpoint = checkpointRepository.findById(accountId).orElse(null);
+            if (checkpoint == null) {
+                // First time the engine owns this account: balances is authoritative,
+                // so every hold past the starting mark counts as applied
+                long ledgerId = settledHoldId(accountId);
+                checkpoint = new HoldEngineCheckpoint();
+                checkpoint.setAccountId(accountId);
+                checkpoint.setLedgerId(ledgerId);
+                checkpoint.setAppliedHoldTotal(
+                    ledgerEntryRepository.sumSuccessfulHolds(accountId, ledgerId, Long.MAX_VALUE));
+                checkpointRepository.save(checkpoint);
+            } else {
+                BigDecimal ledgerHolds = ledgerEntryRepository.sumSuccessfulHolds(
+                    accountId, checkpoint.getLedgerId(), Long.MAX_VALUE);
+                unflushed = ledgerHolds.subtract(checkpoint.getAppliedHoldTotal());
+                if (unflushed.signum() != 0) {
+                    balanceRepository.applyHolds(accountId, unflushed);
+                    checkpointRepository.addAppliedHolds(accountId, unflushed);
+                    log.warn("Recovered unflushed holds: account={}, amount={}", accountId, unflushed);
+                }
+            }
+
+            log.info("Hot account loaded: account={}, available={}, openHold={}",
+                    accountId, balance.getAvailable().subtract(unflushed), balance.getOpenHold().add(unflushed));
+            return new AccountHoldState(
+                toCents(balance.getAvailable().subtract(unflushed)),
+                toCents(balance.getOpenHold().add(unflushed)));
+        });
+    }
+
+    private static long toCents(BigDecimal amount) {
+        return amount.movePointRight(2).longValueExact();
+    }
+
+    private static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static final class AccountHoldState {
+        private final AtomicLong available;
+        private final AtomicLong openHold;
+        private final AtomicLong pendingHolds = new AtomicLong();
+        private final ReentrantLock flushLock = new ReentrantLock();
+
+        private AccountHoldState(long available, long openHold) {
+            this.available = new AtomicLong(available);
+            this.openHold = new AtomicLong(openHold);
+        }
+    }
+}
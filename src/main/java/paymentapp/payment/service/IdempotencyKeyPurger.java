@@ -0,0 +1,136 @@
+package paymentapp.payment.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.repository.IdempotencyKeyRepository;
+import paymentapp.payment.repository.TableMaintenanceRepository;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Removes expired idempotency keys. In chunked mode each chunk is a short
+// transaction deleting a few hundred rows by primary key, with a pause between
+// chunks so replicas keep up. In partition mode whole day partitions are dropped.
+@Component
+@Slf4j
+public class IdempotencyKeyPurger {
+    
+    private static final String TABLE = "idempotency_keys";
+    
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final TableMaintenanceRepository tableMaintenanceRepository;
+    private final ShardRouter shardRouter;
+    private final MeterRegistry meterRegistry;
+    private final Counter purgedRows;
+    private final Map<Integer, AtomicLong> tableRows = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicLong> tableBytes = new ConcurrentHashMap<>();
+    
+    @Value("${payment.idempotency.purge.mode:chunked}")
+    private String mode;
+    
+    @Value("${payment.idempotency.purge.chunk-size:500}")
+    private int chunkSize;
+    
+    @Value("${payment.idempotency.purge.max-chunks-per-run:200}")
+    private int maxChunksPerRun;
+    
+    @Value("${payment.idempotency.purge.pause-ms:50}")
+    private long pauseMs;
+    
+    public IdempotencyKeyPurger(IdempotencyKeyRepository idempotencyKeyRepository,
+            TableMaintenanceRepository tableMaintenanceRepository,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.tableMaintenanceRepository = tableMaintenanceRepository;
+        this.shardRouter = shardRouter;
+        this.meterRegistry = meterRegistry;
+        this.purgedRows = meterRegistry.counter("payment.idempotency.purge.rows");
+    }
+    
+    @Scheduled(fixedDelayString = "${payment.idempotency.purge.interval-ms:60000}")
+    public void purgeExpiredKeys() {
+        for (int shard : shardRouter.shards()) {
+            try {
+                long purged = "partition".equals(mode) ? dropExpiredPartitions(shard) : purgeChunks(shard);
+                if (purged > 0) {
+                    log.info("Purged expired idempotency keys: shard={}, mode={}, count={}", shard, mode, purged);
+                }
+                recordTableStats(shard);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error purging idempotency keys on shard {}", shard, e);
+            }
+        }
+    }
+    
+    private long purgeChunks(int shard) throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now();
+        long total = 0;
+        
+        for (int i = 0; i < maxChunksPerRun; i++) {
+            Integer deleted = shardRouter.inTransactionOnShard(shard, status -> {
+                List<String> keys = new ArrayList<>(idempotencyKeyRepository.findExpiredKeys(cutoff, chunkSize));
+                if (keys.isEmpty()) {
+                    return 0;
+                }
+                // Lock rows in primary-key order, like every other writer would
+                Collections.sort(keys);
+                return idempotencyKeyRepository.deleteExpired(keys, cutoff);
+            });
+            
+            int count = deleted == null ? 0 : deleted;
+            total += count;
+            purgedRows.increment(count);
+            if (count < chunkSize) {
+                break;
+            }
+            Thread.sleep(pauseMs);
+        }
+        return total;
+    }
+    
+    // Expects idempotency_keys to be RANGE-partitioned on TO_DAYS(expires_at),
+    // one partition per day, with new partitions added ahead of time
+    private long dropExpiredPartitions(int shard) {
+        return shardRouter.inTransactionOnShard(shard, status -> {
+            long dropped = 0;
+            for (String partition : tableMaintenanceRepository.partitionsEndingBeforeToday(TABLE)) {
+                tableMaintenanceRepository.dropPartition(TABLE, partition);
+                log.info("Dropped expired idempotency key partition: shard={}, partition={}", shard, partition);
+                dropped++;
+            }
+            meterRegistry.counter("payment.idempotency.purge.partitions").increment(dropped);
+            return dropped;
+        });
+    }
+    
+    private void recordTableStats(int shard) {
+        long[] stats = shardRouter.inTransactionOnShard(shard, status -> tableMaintenanceRepository.tableStats(TABLE));
+        gauge(tableRows, "payment.idempotency.keys.rows", shard).set(stats[0]);
+        gauge(tableBytes, "payment.idempotency.keys.bytes", shard).set(stats[1]);
+    }
+    
+    private AtomicLong gauge(Map<Integer, AtomicLong> gauges, String name, int shard) {
+        return gauges.computeIfAbsent(shard, key -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder(name, value, AtomicLong::get)
+                .tag("shard", String.valueOf(shard))
+                .register(meterRegistry);
+            return value;
+        });
+    }
+}
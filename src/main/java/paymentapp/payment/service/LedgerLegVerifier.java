@@ -0,0 +1,41 @@
+package paymentapp.payment.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.entity.LedgerEntry;
+import paymentapp.payment.repository.LedgerEntryRepository;
+
+// Checks that a ledger leg exists with the expected status. A leg is unique per
+// (tx_id, account_id, leg_type) and its status never changes after insert, so
+// positive answers can be cached; negative ones are not, the row may still arrive.
+@Component
+public class LedgerLegVerifier {
+    
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final Cache<String, Boolean> verifiedLegs;
+    
+    public LedgerLegVerifier(LedgerEntryRepository ledgerEntryRepository,
+            @Value("${payment.projector.verified-legs-cache-size:10000}") long cacheSize) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.verifiedLegs = Caffeine.newBuilder()
+            .maximumSize(cacheSize)
+            .build();
+    }
+    
+    public boolean exists(String txId, String accountId,
+            LedgerEntry.LegType legType, LedgerEntry.TransactionStatus status) {
+        String key = txId + '|' + accountId + '|' + legType + '|' + status;
+        if (verifiedLegs.getIfPresent(key) != null) {
+            return true;
+        }
+        
+        boolean exists = ledgerEntryRepository.existsByTxIdAndAccountIdAndLegTypeAndStatus(
+            txId, accountId, legType, status);
+        if (exists) {
+            verifiedLegs.put(key, Boolean.TRUE);
+        }
+        return exists;
+    }
+}
@@ -0,0 +1,37 @@
+package paymentapp.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import paymentapp.payment.codec.EventCodec;
+import paymentapp.payment.codec.EventCodecs;
+import paymentapp.payment.entity.OutboxEvent;
+
+@Component
+public class OutboxEventFactory {
+    
+    private final ObjectMapper objectMapper;
+    private final EventCodec codec;
+    
+    public OutboxEventFactory(ObjectMapper objectMapper,
+            @Value("${payment.events.codec:json}") String codec) {
+        this.objectMapper = objectMapper;
+        this.codec = EventCodecs.forName(codec);
+    }
+    
+    public OutboxEvent create(String txId, String eventType, Object event, String partitionKey) 
+            throws JsonProcessingException {
+        OutboxEvent outboxEvent = new OutboxEvent();
+        outboxEvent.setTxId(txId);
+        outboxEvent.setEventType(eventType);
+        if (codec != null && codec.supports(event.getClass())) {
+            // Encoded once here; the relay forwards these bytes without decoding them
+            outboxEvent.setPayloadBytes(codec.encode(event));
+        } else {
+            outboxEvent.setPayload(objectMapper.writeValueAsString(event));
+        }
+        outboxEvent.setPartitionKey(partitionKey);
+        return outboxEvent;
+    }
+}
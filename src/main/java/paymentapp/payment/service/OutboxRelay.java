@@ -1,56 +1,51 @@
 package paymentapp.payment.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import paymentapp.payment.entity.OutboxEvent;
-import paymentapp.payment.event.*;
+import paymentapp.payment.metrics.PaymentMetrics;
 import paymentapp.payment.repository.OutboxEventRepository;
+import paymentapp.payment.shard.ShardRouter;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Component
+@ConditionalOnProperty(name = "payment.outbox.relay-mode", havingValue = "polling", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class OutboxRelay {
     
+    private static final String STAGE = "relay";
+    
     private final OutboxEventRepository outboxEventRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final OutboxPublisher outboxPublisher;
+    private final ShardRouter shardRouter;
+    private final PaymentMetrics metrics;
+    
+    @Value("${payment.outbox.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${payment.outbox.max-batches-per-run:20}")
+    private int maxBatchesPerRun;
     
     @Scheduled(fixedDelay = 1000) // Every 1 second
-    @Transactional
     public void processOutboxEvents() {
         try {
-            List<OutboxEvent> unprocessedEvents = outboxEventRepository
-                .findByProcessedFalseOrderByCreatedAt();
-            
-            for (OutboxEvent event : unprocessedEvents) {
-                try {
-                    // Convert JSON payload to appropriate event object
-                    Object eventObject = convertPayloadToEvent(event.getEventType(), event.getPayload());
-                    
-                    // Send to Kafka
-                    kafkaTemplate.send(event.getEventType(), event.getPartitionKey(), eventObject)
-                        .whenComplete((result, ex) -> {
-                            if (ex == null) {
-                                // Mark as processed
-                                outboxEventRepository.markAsProcessed(event.getId(), LocalDateTime.now());
-                                log.debug("Published event: type={}, txId={}", 
-                                        event.getEventType(), event.getTxId());
-                            } else {
-                                log.error("Failed to publish event: type={}, txId={}", 
-                                        event.getEventType(), event.getTxId(), ex);
-                            }
-                        });
-                        
-                } catch (Exception e) {
-                    log.error("Error processing outbox event: id={}", event.getId(), e);
+            // Each page is claimed, published and marked in its own transaction,
+            // so memory stays bounded and row locks are held for one page only.
+            // Every shard has its own outbox table.
+            for (int shard : shardRouter.shards()) {
+                for (int i = 0; i < maxBatchesPerRun; i++) {
+                    Integer published = shardRouter.inTransactionOnShard(shard, status -> publishBatch());
+                    if (published == null || published < batchSize) {
+                        break;
+                    }
                 }
             }
             
@@ -59,15 +54,22 @@ public class OutboxRelay {
         }
     }
     
-    private Object convertPayloadToEvent(String eventType, String payload) throws Exception {
-        return switch (eventType) {
-            case "transfer.requested" -> objectMapper.readValue(payload, TransferRequestedEvent.class);
-            case "transfer.held" -> objectMapper.readValue(payload, TransferHeldEvent.class);
-            case "transfer.credited" -> objectMapper.readValue(payload, TransferCreditedEvent.class);
-            case "transfer.committed" -> objectMapper.readValue(payload, TransferCommittedEvent.class);
-            case "transfer.rejected" -> objectMapper.readValue(payload, TransferRejectedEvent.class);
-            case "transfer.cancelled" -> objectMapper.readValue(payload, TransferCancelledEvent.class);
-            default -> objectMapper.readValue(payload, Object.class);
-        };
+    private int publishBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.claimUnprocessedBatch(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        
+        // Wait for the whole page to be acknowledged, then mark it in one UPDATE
+        Timer.Sample sample = metrics.startStage();
+        List<Long> publishedIds = outboxPublisher.publish(batch);
+        if (!publishedIds.isEmpty()) {
+            metrics.timeDb(STAGE, () -> outboxEventRepository.markAsProcessed(publishedIds, LocalDateTime.now()));
+        }
+        metrics.stopStage(sample, STAGE);
+        metrics.outcome(STAGE, PaymentMetrics.SUCCESS, publishedIds.size());
+        metrics.outcome(STAGE, PaymentMetrics.ERROR, batch.size() - publishedIds.size());
+        
+        return publishedIds.size();
     }
-}
\ No newline at end of file
+}
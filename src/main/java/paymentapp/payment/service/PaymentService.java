@@ -2,115 +2,242 @@ package paymentapp.payment.service;
 
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.TransactionStatus;
+import paymentapp.payment.cache.AccountStatusCache;
+import paymentapp.payment.cache.IdempotencyCache;
 import paymentapp.payment.dto.AccountBalanceResponse;
 import paymentapp.payment.dto.TransactionStatusResponse;
 import paymentapp.payment.dto.TransferRequest;
 import paymentapp.payment.dto.TransferResponse;
-import paymentapp.payment.entity.Account;
 import paymentapp.payment.entity.IdempotencyKey;
 import paymentapp.payment.entity.OutboxEvent;
 import paymentapp.payment.entity.TransactionStatusEntity;
 import paymentapp.payment.event.TransferRequestedEvent;
 import paymentapp.payment.repository.*;
+import paymentapp.payment.shard.ShardRouter;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentService {
     
-    private final AccountRepository accountRepository;
     private final BalanceRepository balanceRepository;
     private final LedgerEntryRepository ledgerEntryRepository;
     private final OutboxEventRepository outboxEventRepository;
     private final IdempotencyKeyRepository idempotencyKeyRepository;
     private final TransactionStatusRepository transactionStatusRepository;
+    private final OutboxEventFactory outboxEventFactory;
+    private final BalanceReadService balanceReadService;
+    private final ShardRouter shardRouter;
+    private final IdempotencyCache idempotencyCache;
+    private final AccountStatusCache accountStatusCache;
+    private final JdbcBatchRepository jdbcBatchRepository;
     private final ObjectMapper objectMapper;
     
-    @Transactional
+    @Value("${payment.idempotency.key-ttl-hours:24}")
+    private int idempotencyKeyTtlHours;
+    
+    @Value("${payment.ingress.group-commit.enabled:false}")
+    private boolean groupCommit;
+    
+    @Value("${payment.ingress.group-commit.max-batch-size:64}")
+    private int groupCommitMaxBatchSize;
+    
+    @Value("${payment.ingress.group-commit.linger-micros:500}")
+    private long groupCommitLingerMicros;
+    
+    @Value("${payment.ingress.group-commit.queue-capacity:4096}")
+    private int groupCommitQueueCapacity;
+    
+    private GroupCommitBatcher<TransferRequest, TransferResponse> ingressBatcher;
+    
+    @PostConstruct
+    public void startIngressBatcher() {
+        if (groupCommit) {
+            ingressBatcher = new GroupCommitBatcher<>("ingress", groupCommitMaxBatchSize, groupCommitLingerMicros,
+                groupCommitQueueCapacity, this::commitTransfers);
+        }
+    }
+    
+    @PreDestroy
+    public void stopIngressBatcher() {
+        if (ingressBatcher != null) {
+            ingressBatcher.stop();
+        }
+    }
+    
+    // The idempotency key, status row and outbox event live on the source account's shard
     public TransferResponse initiateTransfer(TransferRequest request) {
+        // Fast path: retries of recently accepted requests are answered without a transaction
+        Optional<String> cachedResponse = idempotencyCache.get(request.getIdempotencyKey());
+        if (cachedResponse.isPresent()) {
+            try {
+                return objectMapper.readValue(cachedResponse.get(), TransferResponse.class);
+            } catch (Exception e) {
+                log.warn("Ignoring unreadable cached response for idempotency key: {}", request.getIdempotencyKey());
+            }
+        }
+        
+        if (ingressBatcher != null) {
+            try {
+                return ingressBatcher.submit(shardRouter.shardFor(request.getSourceAccount()), request).join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return TransferResponse.rejected("Interrupted while queued");
+            }
+        }
+        return shardRouter.inTransaction(request.getSourceAccount(), status -> doInitiateTransfer(request, status));
+    }
+    
+    // Group commit: the requests queued for one shard are validated and written
+    // in a single transaction, so they share one commit. If that transaction
+    // fails, each request is retried on its own so one bad request cannot
+    // reject the others.
+    private void commitTransfers(int shard, List<GroupCommitBatcher.Pending<TransferRequest, TransferResponse>> batch) {
+        List<TransferRequest> requests = batch.stream().map(GroupCommitBatcher.Pending::item).toList();
+        List<TransferResponse> responses;
+        try {
+            responses = shardRouter.inTransactionOnShard(shard, status -> doInitiateTransfers(requests));
+        } catch (Exception e) {
+            log.warn("Group commit of {} transfers failed, committing them one by one", batch.size(), e);
+            for (GroupCommitBatcher.Pending<TransferRequest, TransferResponse> pending : batch) {
+                try {
+                    pending.future().complete(shardRouter.inTransaction(pending.item().getSourceAccount(),
+                        status -> doInitiateTransfer(pending.item(), status)));
+                } catch (Exception retryError) {
+                    pending.future().completeExceptionally(retryError);
+                }
+            }
+            return;
+        }
+        
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future().complete(responses.get(i));
+        }
+        log.debug("Group commit: shard={}, transfers={}", shard, batch.size());
+    }
+    
+    // Same checks and writes as doInitiateTransfer, with one account lookup for
+    // the whole batch and batched status and outbox inserts. Any exception
+    // rolls back the whole batch.
+    private List<TransferResponse> doInitiateTransfers(List<TransferRequest> requests) {
         try {
-            // Check idempotency
-            Optional<IdempotencyKey> existingKey = idempotencyKeyRepository
-                .findByTxIdAndExpiresAtAfter(request.getIdempotencyKey(), LocalDateTime.now());
+            Set<String> accountIds = new HashSet<>();
+            for (TransferRequest request : requests) {
+                accountIds.add(request.getSourceAccount());
+                accountIds.add(request.getDestinationAccount());
+            }
+            Set<String> activeAccounts = accountStatusCache.activeOf(accountIds);
+            
+            // Keys are claimed in sorted order so concurrent batches lock them consistently
+            List<Integer> claimOrder = IntStream.range(0, requests.size()).boxed()
+                .sorted(Comparator.comparing(i -> requests.get(i).getIdempotencyKey()))
+                .toList();
             
-            if (existingKey.isPresent()) {
-                if (existingKey.get().getStatus() == IdempotencyKey.TransactionStatus.SUCCESS) {
-                    return objectMapper.readValue(existingKey.get().getResponse(), TransferResponse.class);
-                } else if (existingKey.get().getStatus() == IdempotencyKey.TransactionStatus.PENDING) {
-                    return TransferResponse.accepted(existingKey.get().getTxId());
+            TransferResponse[] responses = new TransferResponse[requests.size()];
+            List<TransactionStatusEntity> statuses = new ArrayList<>(requests.size());
+            List<OutboxEvent> outboxEvents = new ArrayList<>(requests.size());
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plusHours(idempotencyKeyTtlHours);
+            for (int i : claimOrder) {
+                TransferRequest request = requests.get(i);
+                if (request.getSourceAccount().equals(request.getDestinationAccount())) {
+                    responses[i] = TransferResponse.rejected("Source and destination accounts cannot be the same");
+                    continue;
                 }
+                if (!activeAccounts.contains(request.getSourceAccount())) {
+                    responses[i] = TransferResponse.rejected("Source account not found or inactive");
+                    continue;
+                }
+                if (!activeAccounts.contains(request.getDestinationAccount())) {
+                    responses[i] = TransferResponse.rejected("Destination account not found or inactive");
+                    continue;
+                }
+                
+                String txId = UUID.randomUUID().toString();
+                TransferResponse response = TransferResponse.accepted(txId);
+                String responseJson = objectMapper.writeValueAsString(response);
+                // A duplicate key later in the same batch finds this row through existingResponse
+                if (idempotencyKeyRepository.insertIfAbsent(request.getIdempotencyKey(), responseJson, now, expiresAt) == 0
+                        && idempotencyKeyRepository.replaceStale(request.getIdempotencyKey(), responseJson, now, expiresAt) == 0) {
+                    responses[i] = existingResponse(request.getIdempotencyKey());
+                    continue;
+                }
+                
+                statuses.add(requestedStatus(txId, request));
+                outboxEvents.add(outboxEventFactory.create(
+                    txId, "transfer.requested", requestedEvent(txId, request), request.getSourceAccount()));
+                idempotencyCache.putAfterCommit(request.getIdempotencyKey(), responseJson);
+                responses[i] = response;
             }
             
+            jdbcBatchRepository.insertTransactionStatuses(statuses);
+            jdbcBatchRepository.insertOutboxEvents(outboxEvents);
+            log.info("Transfers initiated: batch={}, accepted={}", requests.size(), statuses.size());
+            return Arrays.asList(responses);
+            
+        } catch (Exception e) {
+            throw new IllegalStateException("Group commit failed", e);
+        }
+    }
+    
+    private TransferResponse doInitiateTransfer(TransferRequest request, TransactionStatus status) {
+        try {
             // Validate accounts
             if (request.getSourceAccount().equals(request.getDestinationAccount())) {
                 return TransferResponse.rejected("Source and destination accounts cannot be the same");
             }
             
             // Check if source account exists and is active
-            Optional<Account> sourceAccount = accountRepository
-                .findByAccountIdAndStatus(request.getSourceAccount(), Account.AccountStatus.ACTIVE);
-            if (sourceAccount.isEmpty()) {
+            if (!accountStatusCache.isActive(request.getSourceAccount())) {
                 return TransferResponse.rejected("Source account not found or inactive");
             }
             
             // Check if destination account exists and is active
-            Optional<Account> destAccount = accountRepository
-                .findByAccountIdAndStatus(request.getDestinationAccount(), Account.AccountStatus.ACTIVE);
-            if (destAccount.isEmpty()) {
+            if (!accountStatusCache.isActive(request.getDestinationAccount())) {
                 return TransferResponse.rejected("Destination account not found or inactive");
             }
             
             // Generate transaction ID
             String txId = UUID.randomUUID().toString();
+            TransferResponse response = TransferResponse.accepted(txId);
+            String responseJson = objectMapper.writeValueAsString(response);
             
-            // Create idempotency key
-            IdempotencyKey idempotencyKey = new IdempotencyKey();
-            idempotencyKey.setTxId(request.getIdempotencyKey());
-            idempotencyKey.setStatus(IdempotencyKey.TransactionStatus.PENDING);
-            idempotencyKey.setExpiresAt(LocalDateTime.now().plusHours(24));
-            idempotencyKeyRepository.save(idempotencyKey);
+            // Claim the idempotency key together with its final response in one
+            // statement; a concurrent duplicate blocks on the row until we commit
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiresAt = now.plusHours(idempotencyKeyTtlHours);
+            if (idempotencyKeyRepository.insertIfAbsent(request.getIdempotencyKey(), responseJson, now, expiresAt) == 0
+                    && idempotencyKeyRepository.replaceStale(request.getIdempotencyKey(), responseJson, now, expiresAt) == 0) {
+                return existingResponse(request.getIdempotencyKey());
+            }
             
             // Create transaction status
-            TransactionStatusEntity txStatus = new TransactionStatusEntity();
-            txStatus.setTxId(txId);
-            txStatus.setSourceAccount(request.getSourceAccount());
-            txStatus.setDestinationAccount(request.getDestinationAccount());
-            txStatus.setAmount(request.getAmount());
-            txStatus.setStatus(TransactionStatusEntity.Status.REQUESTED);
-            transactionStatusRepository.save(txStatus);
+            transactionStatusRepository.save(requestedStatus(txId, request));
             
-            // Create transfer requested event
-            TransferRequestedEvent event = new TransferRequestedEvent();
-            event.setTxId(txId);
-            event.setSourceAccount(request.getSourceAccount());
-            event.setDestinationAccount(request.getDestinationAccount());
-            event.setAmount(request.getAmount());
-            event.setDescription(request.getDescription());
-            event.setTimestamp(System.currentTimeMillis());
-            
-            // Save to outbox
-            OutboxEvent outboxEvent = new OutboxEvent();
-            outboxEvent.setTxId(txId);
-            outboxEvent.setEventType("transfer.requested");
-            outboxEvent.setPayload(objectMapper.writeValueAsString(event));
-            outboxEvent.setPartitionKey(request.getSourceAccount());
-            outboxEventRepository.save(outboxEvent);
-            
-            TransferResponse response = TransferResponse.accepted(txId);
+            // Save transfer requested event to outbox
+            outboxEventRepository.save(outboxEventFactory.create(
+                txId, "transfer.requested", requestedEvent(txId, request), request.getSourceAccount()));
             
-            // Update idempotency key with response
-            idempotencyKey.setResponse(objectMapper.writeValueAsString(response));
-            idempotencyKey.setStatus(IdempotencyKey.TransactionStatus.SUCCESS);
-            idempotencyKeyRepository.save(idempotencyKey);
+            idempotencyCache.putAfterCommit(request.getIdempotencyKey(), responseJson);
             
             log.info("Transfer initiated: txId={}, source={}, dest={}, amount={}", 
                     txId, request.getSourceAccount(), request.getDestinationAccount(), request.getAmount());
@@ -118,13 +245,49 @@ public class PaymentService {
             return response;
             
         } catch (Exception e) {
+            // Do not leave a claimed idempotency key behind without its outbox event
+            status.setRollbackOnly();
             log.error("Error initiating transfer", e);
             return TransferResponse.rejected("Internal error: " + e.getMessage());
         }
     }
     
+    private static TransactionStatusEntity requestedStatus(String txId, TransferRequest request) {
+        TransactionStatusEntity txStatus = new TransactionStatusEntity();
+        txStatus.setTxId(txId);
+        txStatus.setSourceAccount(request.getSourceAccount());
+        txStatus.setDestinationAccount(request.getDestinationAccount());
+        txStatus.setAmount(request.getAmount());
+        txStatus.setStatus(TransactionStatusEntity.Status.REQUESTED);
+        return txStatus;
+    }
+    
+    private static TransferRequestedEvent requestedEvent(String txId, TransferRequest request) {
+        TransferRequestedEvent event = new TransferRequestedEvent();
+        event.setTxId(txId);
+        event.setSourceAccount(request.getSourceAccount());
+        event.setDestinationAccount(request.getDestinationAccount());
+        event.setAmount(request.getAmount());
+        event.setDescription(request.getDescription());
+        event.setTimestamp(System.currentTimeMillis());
+        return event;
+    }
+    
+    // Reads the winning row with a locking read, which sees it even if it was
+    // committed after this transaction's snapshot was taken
+    private TransferResponse existingResponse(String idempotencyKey) throws Exception {
+        IdempotencyKey existingKey = idempotencyKeyRepository.lockByTxId(idempotencyKey)
+            .orElseThrow(() -> new IllegalStateException("Idempotency key vanished: " + idempotencyKey));
+        
+        if (existingKey.getStatus() == IdempotencyKey.TransactionStatus.SUCCESS && existingKey.getResponse() != null) {
+            idempotencyCache.put(idempotencyKey, existingKey.getResponse());
+            return objectMapper.readValue(existingKey.getResponse(), TransferResponse.class);
+        }
+        return TransferResponse.accepted(existingKey.getTxId());
+    }
+    
     public Optional<AccountBalanceResponse> getAccountBalance(String accountId) {
-        return balanceRepository.findById(accountId)
+        return balanceReadService.getBalance(accountId)
             .map(balance -> {
                 AccountBalanceResponse response = new AccountBalanceResponse();
                 response.setAccountId(accountId);
@@ -136,19 +299,28 @@ public class PaymentService {
             });
     }
     
+    // The txId does not say which shard the transfer started on, so ask each one
     public Optional<TransactionStatusResponse> getTransactionStatus(String txId) {
-        return transactionStatusRepository.findById(txId)
-            .map(tx -> {
-                TransactionStatusResponse response = new TransactionStatusResponse();
-                response.setTxId(tx.getTxId());
-                response.setSourceAccount(tx.getSourceAccount());
-                response.setDestinationAccount(tx.getDestinationAccount());
-                response.setAmount(tx.getAmount());
-                response.setStatus(tx.getStatus().name());
-                response.setErrorMessage(tx.getErrorMessage());
-                response.setCreatedAt(tx.getCreatedAt().toEpochSecond(java.time.ZoneOffset.UTC));
-                response.setUpdatedAt(tx.getUpdatedAt().toEpochSecond(java.time.ZoneOffset.UTC));
-                return response;
-            });
+        for (int shard : shardRouter.shards()) {
+            Optional<TransactionStatusEntity> tx = shardRouter.inTransactionOnShard(shard,
+                status -> transactionStatusRepository.findById(txId));
+            if (tx.isPresent()) {
+                return tx.map(this::toStatusResponse);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    private TransactionStatusResponse toStatusResponse(TransactionStatusEntity tx) {
+        TransactionStatusResponse response = new TransactionStatusResponse();
+        response.setTxId(tx.getTxId());
+        response.setSourceAccount(tx.getSourceAccount());
+        response.setDestinationAccount(tx.getDestinationAccount());
+        response.setAmount(tx.getAmount());
+        response.setStatus(tx.getStatus().name());
+        response.setErrorMessage(tx.getErrorMessage());
+        response.setCreatedAt(tx.getCreatedAt().toEpochSecond(java.time.ZoneOffset.UTC));
+        response.setUpdatedAt(tx.getUpdatedAt().toEpochSecond(java.time.ZoneOffset.UTC));
+        return response;
     }
 }
\ No newline at end of file
@@ -1,95 +1,415 @@
 package paymentapp.payment.service;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import paymentapp.payment.entity.LedgerEntry;
-import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.entity.ReconcilerCheckpoint;
 import paymentapp.payment.entity.TransactionStatusEntity;
 import paymentapp.payment.event.TransferCancelledEvent;
 import paymentapp.payment.repository.BalanceRepository;
+import paymentapp.payment.repository.JdbcBatchRepository;
 import paymentapp.payment.repository.LedgerEntryRepository;
 import paymentapp.payment.repository.OutboxEventRepository;
+import paymentapp.payment.repository.ReconcilerCheckpointRepository;
 import paymentapp.payment.repository.TransactionStatusRepository;
+import paymentapp.payment.shard.ShardRouter;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Releases holds that were never debited or released. In timer mode each hold
+// is released when its HoldExpiryTimer deadline passes, and the ledger is only
+// scanned at startup to re-arm the holds still open. In scan mode successful
+// holds are walked periodically. Both walk holds in id order, one bounded page
+// per transaction, behind a persisted high-water mark: everything up to it is
+// settled, so a walk only looks at holds written since the last one. Ids are
+// taken at insert but become visible at commit, so a settled hold can show up
+// before an older one still in an open transaction. The mark therefore only
+// passes holds older than the hold timeout, which no transaction outlives.
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ReconcilerService {
     
+    private static final String CHECKPOINT = "orphaned-holds";
+    private static final String TIMEOUT_MESSAGE = "Transaction cancelled due to timeout";
+    
     private final LedgerEntryRepository ledgerEntryRepository;
     private final BalanceRepository balanceRepository;
     private final TransactionStatusRepository transactionStatusRepository;
+    private final JdbcBatchRepository jdbcBatchRepository;
     private final OutboxEventRepository outboxEventRepository;
-    private final ObjectMapper objectMapper;
+    private final OutboxEventFactory outboxEventFactory;
+    private final HotAccountHoldEngine holdEngine;
+    private final HoldExpiryTimer holdExpiryTimer;
+    private final ReconcilerCheckpointRepository checkpointRepository;
+    private final ShardRouter shardRouter;
+    private final MeterRegistry meterRegistry;
+    private final Counter scanReleases;
+    private final Counter timerReleases;
+    private final Map<Integer, AtomicLong> backlog = new ConcurrentHashMap<>();
+    
+    @Value("${payment.reconciler.mode:scan}")
+    private String mode;
+    
+    @Value("${payment.reconciler.timer.retry-delay-ms:5000}")
+    private long retryDelayMs;
     
     @Value("${payment.reconciler.hold-timeout-minutes:5}")
     private int holdTimeoutMinutes;
     
+    @Value("${payment.reconciler.page-size:500}")
+    private int pageSize;
+    
+    @Value("${payment.reconciler.max-pages-per-run:100}")
+    private int maxPagesPerRun;
+    
+    public ReconcilerService(LedgerEntryRepository ledgerEntryRepository,
+            BalanceRepository balanceRepository,
+            TransactionStatusRepository transactionStatusRepository,
+            JdbcBatchRepository jdbcBatchRepository,
+            OutboxEventRepository outboxEventRepository,
+            OutboxEventFactory outboxEventFactory,
+            HotAccountHoldEngine holdEngine,
+            HoldExpiryTimer holdExpiryTimer,
+            ReconcilerCheckpointRepository checkpointRepository,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.balanceRepository = balanceRepository;
+        this.transactionStatusRepository = transactionStatusRepository;
+        this.jdbcBatchRepository = jdbcBatchRepository;
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxEventFactory = outboxEventFactory;
+        this.holdEngine = holdEngine;
+        this.holdExpiryTimer = holdExpiryTimer;
+        this.checkpointRepository = checkpointRepository;
+        this.shardRouter = shardRouter;
+        this.meterRegistry = meterRegistry;
+        this.scanReleases = meterRegistry.counter("payment.reconciler.releases", "trigger", "scan");
+        this.timerReleases = meterRegistry.counter("payment.reconciler.releases", "trigger", "timer");
+    }
+    
     @Scheduled(fixedDelayString = "${payment.reconciler.schedule-interval:30000}")
-    @Transactional
     public void reconcileOrphanedHolds() {
-        try {
-            LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(holdTimeoutMinutes);
-            List<LedgerEntry> orphanedHolds = ledgerEntryRepository.findOrphanedHolds(cutoffTime);
-            
-            for (LedgerEntry hold : orphanedHolds) {
-                log.warn("Found orphaned hold: txId={}, account={}, amount={}", 
-                        hold.getTxId(), hold.getAccountId(), hold.getAmount());
-                
-                // Create release entry
-                LedgerEntry releaseEntry = new LedgerEntry();
-                releaseEntry.setTxId(hold.getTxId());
-                releaseEntry.setAccountId(hold.getAccountId());
-                releaseEntry.setLegType(LedgerEntry.LegType.RELEASE);
-                releaseEntry.setAmount(hold.getAmount());
-                releaseEntry.setStatus(LedgerEntry.TransactionStatus.FAILED);
-                releaseEntry.setDescription("Auto-release orphaned hold due to timeout");
-                ledgerEntryRepository.save(releaseEntry);
-                
-                // Release the hold in balance
-                balanceRepository.releaseHold(hold.getAccountId(), hold.getAmount());
-                
-                // Update transaction status
-                transactionStatusRepository.findById(hold.getTxId())
-                    .ifPresent(tx -> {
-                        tx.setStatus(TransactionStatusEntity.Status.CANCELLED);
-                        tx.setErrorMessage("Transaction cancelled due to timeout");
-                        transactionStatusRepository.save(tx);
-                    });
-                
-                // Publish cancellation event
-                TransferCancelledEvent cancelledEvent = new TransferCancelledEvent();
-                cancelledEvent.setTxId(hold.getTxId());
-                cancelledEvent.setSourceAccount(hold.getAccountId());
-                cancelledEvent.setAmount(hold.getAmount());
-                cancelledEvent.setReason("Transaction timeout");
-                cancelledEvent.setTimestamp(System.currentTimeMillis());
-                
-                OutboxEvent outboxEvent = new OutboxEvent();
-                outboxEvent.setTxId(hold.getTxId());
-                outboxEvent.setEventType("transfer.cancelled");
-                outboxEvent.setPayload(objectMapper.writeValueAsString(cancelledEvent));
-                outboxEvent.setPartitionKey(hold.getAccountId());
-                outboxEventRepository.save(outboxEvent);
-                
-                log.info("Reconciled orphaned hold: txId={}", hold.getTxId());
+        if (!"scan".equals(mode)) {
+            return;
+        }
+        scanShards();
+    }
+    
+    // Timers live in the memory of the instance that placed the hold; if it dies
+    // they are only re-armed when some instance restarts. A slow scan releases
+    // those holds on a fleet that keeps running.
+    @Scheduled(initialDelayString = "${payment.reconciler.timer.backstop-interval-ms:600000}",
+            fixedDelayString = "${payment.reconciler.timer.backstop-interval-ms:600000}")
+    public void backstopScan() {
+        if (!"timer".equals(mode)) {
+            return;
+        }
+        scanShards();
+    }
+    
+    private void scanShards() {
+        // A hold, its balance row and its status row all live on the source account's shard
+        for (int shard : shardRouter.shards()) {
+            try {
+                reconcileShard(shard);
+            } catch (Exception e) {
+                log.error("Error during reconciliation on shard {}", shard, e);
+            }
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${payment.reconciler.timer.tick-ms:100}")
+    public void expireHolds() {
+        if (!"timer".equals(mode)) {
+            return;
+        }
+        for (HoldExpiryTimer.PendingHold hold : holdExpiryTimer.expire(System.currentTimeMillis())) {
+            try {
+                boolean released = shardRouter.inTransaction(hold.accountId(), status ->
+                    releaseIfOrphaned(hold.txId(), hold.accountId()));
+                log.debug("Hold timer expired: txId={}, released={}", hold.txId(), released);
+            } catch (Exception e) {
+                log.error("Error releasing expired hold: txId={}", hold.txId(), e);
+                holdExpiryTimer.arm(hold.txId(), hold.accountId(), System.currentTimeMillis() + retryDelayMs);
+            }
+        }
+    }
+    
+    // Timers live in memory, so holds left open by the previous run are re-armed
+    // from the ledger, each with the deadline it had when it was placed
+    @EventListener(ApplicationReadyEvent.class)
+    public void rearmOpenHolds() {
+        if (!"timer".equals(mode)) {
+            return;
+        }
+        for (int shard : shardRouter.shards()) {
+            try {
+                log.info("Re-armed {} open holds on shard {}", rearmShard(shard), shard);
+            } catch (Exception e) {
+                log.error("Error re-arming open holds on shard {}", shard, e);
+            }
+        }
+    }
+    
+    private int rearmShard(int shard) {
+        LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(holdTimeoutMinutes);
+        long afterId = shardRouter.inTransactionOnShard(shard, status -> highWaterMark());
+        boolean markMovable = true;
+        int armed = 0;
+        while (true) {
+            RearmPage page = rearmPage(shard, afterId, markMovable, cutoffTime);
+            armed += page.armed();
+            if (page.lastId() < 0) {
+                return armed;
+            }
+            afterId = page.lastId();
+            markMovable = page.markMovable();
+        }
+    }
+    
+    private void reconcileShard(int shard) {
+        LocalDateTime cutoffTime = LocalDateTime.now().minusMinutes(holdTimeoutMinutes);
+        long afterId = shardRouter.inTransactionOnShard(shard, status -> highWaterMark());
+        boolean markMovable = true;
+        int released = 0;
+        for (int page = 0; page < maxPagesPerRun; page++) {
+            long pageAfterId = afterId;
+            boolean pageMarkMovable = markMovable;
+            PageResult result = shardRouter.inTransactionOnShard(shard, status ->
+                reconcilePage(pageAfterId, pageMarkMovable, cutoffTime));
+            released += result.released();
+            if (result.done()) {
+                break;
+            }
+            afterId = result.lastId();
+            markMovable = result.markMovable();
+        }
+        
+        if (released > 0) {
+            log.info("Reconciled {} orphaned holds on shard {}", released, shard);
+        }
+        
+        long pending = shardRouter.inTransactionOnShard(shard, status ->
+            ledgerEntryRepository.countHoldsAfter(highWaterMark(), cutoffTime));
+        backlogGauge(shard).set(pending);
+    }
+    
+    // Releases the orphaned holds of the page after afterId. The walk goes on
+    // past a hold it could not resolve, but the high-water mark stops there for
+    // the rest of the run, so the next run looks at that hold again.
+    private PageResult reconcilePage(long afterId, boolean markMovable, LocalDateTime cutoffTime) {
+        List<LedgerEntry> holds = ledgerEntryRepository.findHoldsAfter(afterId, pageSize);
+        if (holds.isEmpty()) {
+            return new PageResult(0, afterId, false, true);
+        }
+        Set<Long> settled = new HashSet<>(ledgerEntryRepository.findSettledHoldIds(
+            holds.stream().map(LedgerEntry::getId).toList()));
+        
+        List<LedgerEntry> walked = new ArrayList<>();
+        List<LedgerEntry> orphaned = new ArrayList<>();
+        boolean done = holds.size() < pageSize;
+        for (LedgerEntry hold : holds) {
+            if (!hold.getCreatedAt().isBefore(cutoffTime)) {
+                // Recent: it may still be in flight, or older ids may not be visible
+                // yet. The mark stops here until the hold is past the timeout.
+                done = true;
+                break;
+            }
+            walked.add(hold);
+            if (!settled.contains(hold.getId())) {
+                orphaned.add(hold);
+            }
+        }
+        
+        // One batched guarded update cancels the page's transfers that are still HELD
+        boolean[] cancelled = jdbcBatchRepository.transitionStatuses(
+            orphaned.stream().map(LedgerEntry::getTxId).toList(),
+            TransactionStatusEntity.Status.CANCELLED, TIMEOUT_MESSAGE);
+        Set<String> rejected = rejectedTxIds(orphaned, cancelled);
+        
+        Set<Long> unresolved = new HashSet<>();
+        int released = 0;
+        for (int i = 0; i < orphaned.size(); i++) {
+            LedgerEntry hold = orphaned.get(i);
+            if (cancelled[i] || rejected.contains(hold.getTxId())) {
+                releaseOrphanedHold(hold, cancelled[i]);
+                scanReleases.increment();
+                released++;
+            } else {
+                // Credited: the commit worker settles it
+                unresolved.add(hold.getId());
+            }
+        }
+        
+        long markId = -1;
+        for (LedgerEntry hold : walked) {
+            markMovable = markMovable && !unresolved.contains(hold.getId());
+            if (markMovable) {
+                markId = hold.getId();
+            }
+        }
+        if (markId > 0) {
+            checkpointRepository.advance(CHECKPOINT, markId);
+        }
+        long lastId = walked.isEmpty() ? afterId : walked.get(walked.size() - 1).getId();
+        return new PageResult(released, lastId, markMovable, done || walked.isEmpty());
+    }
+    
+    // A transfer rejected after its hold (credit or commit failure) keeps the
+    // funds held until the reconciler releases them; its status stays REJECTED
+    private Set<String> rejectedTxIds(List<LedgerEntry> orphaned, boolean[] cancelled) {
+        List<String> txIds = new ArrayList<>();
+        for (int i = 0; i < orphaned.size(); i++) {
+            if (!cancelled[i]) {
+                txIds.add(orphaned.get(i).getTxId());
             }
+        }
+        if (txIds.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> rejected = new HashSet<>();
+        for (TransactionStatusEntity tx : transactionStatusRepository.findAllById(txIds)) {
+            if (tx.getStatus() == TransactionStatusEntity.Status.REJECTED) {
+                rejected.add(tx.getTxId());
+            }
+        }
+        return rejected;
+    }
+    
+    // Arms every unsettled hold of the page after afterId. The high-water mark
+    // only moves over settled holds past the timeout that no open or recent
+    // hold precedes.
+    private RearmPage rearmPage(int shard, long afterId, boolean markMovable, LocalDateTime cutoffTime) {
+        return shardRouter.inTransactionOnShard(shard, status -> {
+            List<LedgerEntry> holds = ledgerEntryRepository.findHoldsAfter(afterId, pageSize);
+            if (holds.isEmpty()) {
+                return new RearmPage(0, -1, false);
+            }
+            Set<Long> settled = new HashSet<>(ledgerEntryRepository.findSettledHoldIds(
+                holds.stream().map(LedgerEntry::getId).toList()));
             
-            if (!orphanedHolds.isEmpty()) {
-                log.info("Reconciled {} orphaned holds", orphanedHolds.size());
+            boolean movable = markMovable;
+            long settledUpTo = -1;
+            int armed = 0;
+            for (LedgerEntry hold : holds) {
+                boolean settledHold = settled.contains(hold.getId());
+                movable = movable && settledHold && hold.getCreatedAt().isBefore(cutoffTime);
+                if (movable) {
+                    settledUpTo = hold.getId();
+                }
+                if (settledHold) {
+                    continue;
+                }
+                long deadlineMs = hold.getCreatedAt().plusMinutes(holdTimeoutMinutes)
+                    .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                holdExpiryTimer.arm(hold.getTxId(), hold.getAccountId(), deadlineMs);
+                armed++;
             }
             
-        } catch (Exception e) {
-            log.error("Error during reconciliation", e);
+            if (settledUpTo > 0) {
+                checkpointRepository.advance(CHECKPOINT, settledUpTo);
+            }
+            long lastId = holds.size() < pageSize ? -1 : holds.get(holds.size() - 1).getId();
+            return new RearmPage(armed, lastId, movable);
+        });
+    }
+    
+    private boolean releaseIfOrphaned(String txId, String accountId) {
+        LedgerEntry hold = ledgerEntryRepository.findByTxIdAndAccountIdAndLegType(
+            txId, accountId, LedgerEntry.LegType.HOLD).orElse(null);
+        if (hold == null || hold.getStatus() != LedgerEntry.TransactionStatus.SUCCESS
+                || !ledgerEntryRepository.findSettledHoldIds(List.of(hold.getId())).isEmpty()) {
+            return false;
+        }
+        // A credited transfer is finished by the commit worker, possibly on
+        // another instance whose disarm this one never saw. A transfer still
+        // HELD is cancelled; a rejected one only has its hold released.
+        boolean cancelled = transactionStatusRepository.transition(
+            txId, TransactionStatusEntity.Status.CANCELLED, TIMEOUT_MESSAGE);
+        if (!cancelled && transactionStatusRepository.findById(txId)
+                .filter(tx -> tx.getStatus() == TransactionStatusEntity.Status.REJECTED)
+                .isEmpty()) {
+            return false;
+        }
+        releaseOrphanedHold(hold, cancelled);
+        timerReleases.increment();
+        return true;
+    }
+    
+    // The caller has already moved the transfer to CANCELLED, or found it REJECTED
+    private void releaseOrphanedHold(LedgerEntry hold, boolean cancelled) {
+        log.warn("Found orphaned hold: txId={}, account={}, amount={}", 
+                hold.getTxId(), hold.getAccountId(), hold.getAmount());
+        
+        // Create release entry
+        LedgerEntry releaseEntry = new LedgerEntry();
+        releaseEntry.setTxId(hold.getTxId());
+        releaseEntry.setAccountId(hold.getAccountId());
+        releaseEntry.setLegType(LedgerEntry.LegType.RELEASE);
+        releaseEntry.setAmount(hold.getAmount());
+        releaseEntry.setStatus(LedgerEntry.TransactionStatus.FAILED);
+        releaseEntry.setDescription("Auto-release orphaned hold due to timeout");
+        ledgerEntryRepository.save(releaseEntry);
+        
+        // Release the hold in balance
+        balanceRepository.releaseHold(hold.getAccountId(), hold.getAmount());
+        holdEngine.onHoldReleased(hold.getAccountId(), hold.getAmount());
+        
+        if (!cancelled) {
+            // transfer.rejected went out when the transfer was rejected
+            log.info("Released hold of rejected transfer: txId={}", hold.getTxId());
+            return;
         }
+        
+        // Publish cancellation event
+        TransferCancelledEvent cancelledEvent = new TransferCancelledEvent();
+        cancelledEvent.setTxId(hold.getTxId());
+        cancelledEvent.setSourceAccount(hold.getAccountId());
+        cancelledEvent.setAmount(hold.getAmount());
+        cancelledEvent.setReason("Transaction timeout");
+        cancelledEvent.setTimestamp(System.currentTimeMillis());
+        
+        outboxEventRepository.save(outboxEventFactory.create(
+            hold.getTxId(), "transfer.cancelled", cancelledEvent, hold.getAccountId()));
+        
+        log.info("Reconciled orphaned hold: txId={}", hold.getTxId());
+    }
+    
+    private long highWaterMark() {
+        return checkpointRepository.findById(CHECKPOINT).map(ReconcilerCheckpoint::getLastId).orElse(0L);
+    }
+    
+    // Timed-out holds beyond the high-water mark that are still to be scanned
+    private AtomicLong backlogGauge(int shard) {
+        return backlog.computeIfAbsent(shard, key -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("payment.reconciler.backlog", value, AtomicLong::get)
+                .tag("shard", String.valueOf(shard))
+                .register(meterRegistry);
+            return value;
+        });
+    }
+    
+    private record PageResult(int released, long lastId, boolean markMovable, boolean done) {
+    }
+    
+    private record RearmPage(int armed, long lastId, boolean markMovable) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,87 @@
+package paymentapp.payment.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import paymentapp.payment.cache.BalanceSnapshot;
+import paymentapp.payment.entity.BalanceSlot;
+import paymentapp.payment.repository.BalanceRepository;
+import paymentapp.payment.repository.BalanceSlotRepository;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+// Book-balance writes for destination accounts. Striped accounts spread their
+// credits over balance_slots rows chosen by transaction hash, so concurrent
+// credits lock different rows. Debits fold the slots back into the balances
+// row first, because the non-negative check needs the full book balance.
+@Service
+@Slf4j
+public class StripedBalanceService {
+    
+    private final BalanceRepository balanceRepository;
+    private final BalanceSlotRepository balanceSlotRepository;
+    private final boolean enabled;
+    private final Set<String> stripedAccounts;
+    private final int slotCount;
+    
+    public StripedBalanceService(BalanceRepository balanceRepository,
+            BalanceSlotRepository balanceSlotRepository,
+            @Value("${payment.balance-striping.enabled:false}") boolean enabled,
+            @Value("${payment.balance-striping.accounts:}") String[] stripedAccounts,
+            @Value("${payment.balance-striping.slots:8}") int slotCount) {
+        this.balanceRepository = balanceRepository;
+        this.balanceSlotRepository = balanceSlotRepository;
+        this.enabled = enabled;
+        this.stripedAccounts = Set.copyOf(Arrays.asList(stripedAccounts));
+        this.slotCount = slotCount;
+    }
+    
+    public boolean isStriped(String accountId) {
+        return enabled && stripedAccounts.contains(accountId);
+    }
+    
+    public int creditAmount(String accountId, String txId, BigDecimal amount) {
+        if (!isStriped(accountId)) {
+            return balanceRepository.creditAmount(accountId, amount);
+        }
+        return balanceSlotRepository.creditSlot(accountId, slotFor(txId), amount);
+    }
+    
+    public int debitAmount(String accountId, BigDecimal amount) {
+        if (isStriped(accountId)) {
+            foldSlots(accountId);
+        }
+        return balanceRepository.debitAmount(accountId, amount);
+    }
+    
+    // Adds book and version of the slot rows, so cached snapshots change with every slot credit
+    public BalanceSnapshot includeSlots(BalanceSnapshot snapshot) {
+        if (!isStriped(snapshot.getAccountId())) {
+            return snapshot;
+        }
+        snapshot.setBook(snapshot.getBook().add(balanceSlotRepository.sumBook(snapshot.getAccountId())));
+        snapshot.setVersion(snapshot.getVersion() + balanceSlotRepository.sumVersion(snapshot.getAccountId()));
+        return snapshot;
+    }
+    
+    // Moves everything credited to slots into the balances row
+    public void foldSlots(String accountId) {
+        List<BalanceSlot> slots = balanceSlotRepository.lockSlots(accountId);
+        BigDecimal total = slots.stream()
+            .map(BalanceSlot::getBook)
+            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        
+        if (total.signum() != 0) {
+            balanceRepository.creditAmount(accountId, total);
+            balanceSlotRepository.clearSlots(accountId);
+            log.debug("Folded balance slots: account={}, amount={}", accountId, total);
+        }
+    }
+    
+    private int slotFor(String txId) {
+        return Math.floorMod(txId.hashCode(), slotCount);
+    }
+}
@@ -0,0 +1,183 @@
+package paymentapp.payment.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import paymentapp.payment.dto.TransactionStatusResponse;
+import paymentapp.payment.event.TransferCancelledEvent;
+import paymentapp.payment.event.TransferCommittedEvent;
+import paymentapp.payment.event.TransferCreditedEvent;
+import paymentapp.payment.event.TransferHeldEvent;
+import paymentapp.payment.event.TransferRejectedEvent;
+import paymentapp.payment.event.TransferRequestedEvent;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Pushes status transitions to SSE subscribers as the workers publish them.
+// Emitters are async servlet responses, so an open stream does not hold a
+// request thread. Each node consumes the transfer.* topics in its own consumer
+// group starting at the latest offset: every node sees every transition but
+// only fans out to its own subscribers. Writes to the emitters happen on sender
+// lanes, one per txId hash, so a slow client never blocks the consumer.
+@Component
+@Slf4j
+public class TransactionStatusStream {
+    
+    private static final Set<String> TERMINAL_STATUSES = Set.of("COMMITTED", "REJECTED", "CANCELLED");
+    
+    private final PaymentService paymentService;
+    private final long timeoutMs;
+    private final ExecutorService[] senders;
+    
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    
+    public TransactionStatusStream(PaymentService paymentService,
+            @Value("${payment.status-stream.timeout-ms:300000}") long timeoutMs,
+            @Value("${payment.status-stream.sender-threads:4}") int senderThreads,
+            @Value("${payment.status-stream.sender-queue-capacity:10000}") int senderQueueCapacity) {
+        this.paymentService = paymentService;
+        this.timeoutMs = timeoutMs;
+        // A single thread per lane keeps the transitions of a txId in order
+        this.senders = new ExecutorService[senderThreads];
+        for (int i = 0; i < senderThreads; i++) {
+            String name = "status-stream-" + i;
+            senders[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(senderQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, name);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        for (ExecutorService sender : senders) {
+            sender.shutdownNow();
+        }
+    }
+    
+    // Registers before reading the current status, so a transition published in
+    // between is pushed rather than lost. Clients ignore transitions that go backwards.
+    public Optional<SseEmitter> subscribe(String txId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        register(txId, emitter);
+        
+        Optional<TransactionStatusResponse> current = paymentService.getTransactionStatus(txId);
+        if (current.isEmpty()) {
+            unregister(txId, emitter);
+            return Optional.empty();
+        }
+        
+        dispatch(txId, emitter, current.get());
+        return Optional.of(emitter);
+    }
+    
+    @KafkaListener(
+        topics = {"transfer.requested", "transfer.held", "transfer.credited",
+                  "transfer.committed", "transfer.rejected", "transfer.cancelled"},
+        groupId = "status-stream-${payment.status-stream.instance-id}",
+        properties = {"auto.offset.reset=latest"})
+    public void handleTransferEvent(ConsumerRecord<String, Object> record) {
+        TransactionStatusResponse update = toStatusUpdate(record.value());
+        if (update == null) {
+            return;
+        }
+        
+        Set<SseEmitter> emitters = subscribers.get(update.getTxId());
+        if (emitters != null) {
+            emitters.forEach(emitter -> dispatch(update.getTxId(), emitter, update));
+        }
+    }
+    
+    private void dispatch(String txId, SseEmitter emitter, TransactionStatusResponse update) {
+        try {
+            senders[Math.floorMod(txId.hashCode(), senders.length)].execute(() -> send(txId, emitter, update));
+        } catch (RejectedExecutionException e) {
+            // Lane is backed up; the client reconnects and reads the current status
+            log.warn("Status stream lane full, closing subscriber for txId: {}", txId);
+            unregister(txId, emitter);
+            emitter.complete();
+        }
+    }
+    
+    private void send(String txId, SseEmitter emitter, TransactionStatusResponse update) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(update));
+            if (TERMINAL_STATUSES.contains(update.getStatus())) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away or the emitter already completed
+            log.debug("Dropping status subscriber for txId: {}", txId);
+            unregister(txId, emitter);
+        }
+    }
+    
+    private void register(String txId, SseEmitter emitter) {
+        subscribers.computeIfAbsent(txId, key -> ConcurrentHashMap.newKeySet()).add(emitter);
+        emitter.onCompletion(() -> unregister(txId, emitter));
+        emitter.onTimeout(() -> unregister(txId, emitter));
+        emitter.onError(e -> unregister(txId, emitter));
+    }
+    
+    private void unregister(String txId, SseEmitter emitter) {
+        subscribers.computeIfPresent(txId, (key, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+    
+    private TransactionStatusResponse toStatusUpdate(Object event) {
+        TransactionStatusResponse update = new TransactionStatusResponse();
+        if (event instanceof TransferRequestedEvent e) {
+            fill(update, e.getTxId(), e.getSourceAccount(), e.getDestinationAccount(), e.getAmount(), e.getTimestamp());
+            update.setStatus("REQUESTED");
+        } else if (event instanceof TransferHeldEvent e) {
+            fill(update, e.getTxId(), e.getSourceAccount(), e.getDestinationAccount(), e.getAmount(), e.getTimestamp());
+            update.setStatus("HELD");
+        } else if (event instanceof TransferCreditedEvent e) {
+            fill(update, e.getTxId(), e.getSourceAccount(), e.getDestinationAccount(), e.getAmount(), e.getTimestamp());
+            update.setStatus("CREDITED");
+        } else if (event instanceof TransferCommittedEvent e) {
+            fill(update, e.getTxId(), e.getSourceAccount(), e.getDestinationAccount(), e.getAmount(), e.getTimestamp());
+            update.setStatus("COMMITTED");
+        } else if (event instanceof TransferRejectedEvent e) {
+            fill(update, e.getTxId(), e.getSourceAccount(), e.getDestinationAccount(), e.getAmount(), e.getTimestamp());
+            update.setStatus("REJECTED");
+            update.setErrorMessage(e.getReason());
+        } else if (event instanceof TransferCancelledEvent e) {
+            fill(update, e.getTxId(), e.getSourceAccount(), e.getDestinationAccount(), e.getAmount(), e.getTimestamp());
+            update.setStatus("CANCELLED");
+            update.setErrorMessage(e.getReason());
+        } else {
+            return null;
+        }
+        return update;
+    }
+    
+    private static void fill(TransactionStatusResponse update, String txId, String sourceAccount,
+            String destinationAccount, BigDecimal amount, Long timestamp) {
+        update.setTxId(txId);
+        update.setSourceAccount(sourceAccount);
+        update.setDestinationAccount(destinationAccount);
+        update.setAmount(amount);
+        if (timestamp != null) {
+            update.setUpdatedAt(timestamp / 1000);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package paymentapp.payment.shard;
+
+// Shard the current thread's next transaction should run against. Read by
+// ShardRoutingDataSource when a connection is acquired.
+public final class ShardContext {
+    
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    
+    private ShardContext() {
+    }
+    
+    public static Integer get() {
+        return CURRENT.get();
+    }
+    
+    public static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+}
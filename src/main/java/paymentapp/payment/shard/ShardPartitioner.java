@@ -0,0 +1,47 @@
+package paymentapp.payment.shard;
+
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.util.Map;
+
+// Sends every key to a partition p with p % totalShards == shard(key), so the
+// consumer of a partition only ever works on accounts of one shard.
+public class ShardPartitioner implements Partitioner {
+    
+    public static final String TOTAL_SHARDS_CONFIG = "payment.shard.total-shards";
+    
+    private int totalShards = 1;
+    
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object value = configs.get(TOTAL_SHARDS_CONFIG);
+        if (value != null) {
+            totalShards = Integer.parseInt(value.toString());
+        }
+    }
+    
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, 
+            Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionsForTopic(topic).size();
+        if (key == null) {
+            return 0;
+        }
+        
+        int shard = ShardRouter.shardOf(key.toString(), totalShards);
+        if (partitions < totalShards) {
+            return shard % partitions;
+        }
+        
+        // Spread a shard's keys over all partitions that map to it
+        int partitionsPerShard = partitions / totalShards;
+        int spread = Utils.toPositive(Utils.murmur2(keyBytes)) % partitionsPerShard;
+        return shard + spread * totalShards;
+    }
+    
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,26 @@
+package paymentapp.payment.shard;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "payment.shard")
+@Data
+public class ShardProperties {
+    private boolean enabled = false;
+    private int totalShards = 1;
+    private int currentShard = 0;
+    
+    // One entry per shard id, 0 .. totalShards - 1
+    private Map<Integer, Node> datasources = new HashMap<>();
+    
+    @Data
+    public static class Node {
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 20;
+    }
+}
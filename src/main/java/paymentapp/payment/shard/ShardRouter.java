@@ -0,0 +1,116 @@
+package paymentapp.payment.shard;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// Runs transactions on the shard that owns an account. With sharding disabled
+// every call is a plain transaction on the single datasource.
+@Component
+public class ShardRouter {
+    
+    private final TransactionTemplate requiredTemplate;
+    private final TransactionTemplate requiresNewTemplate;
+    private final boolean enabled;
+    private final int totalShards;
+    private final int currentShard;
+    
+    public ShardRouter(PlatformTransactionManager transactionManager,
+            @Value("${payment.shard.enabled:false}") boolean enabled,
+            @Value("${payment.shard.total-shards:1}") int totalShards,
+            @Value("${payment.shard.current-shard:0}") int currentShard) {
+        this.requiredTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate = new TransactionTemplate(transactionManager);
+        this.requiresNewTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.totalShards = totalShards;
+        this.currentShard = currentShard;
+    }
+    
+    public static int shardOf(String accountId, int totalShards) {
+        return Math.floorMod(accountId.hashCode(), totalShards);
+    }
+    
+    public int shardFor(String accountId) {
+        return enabled ? shardOf(accountId, totalShards) : currentShard;
+    }
+    
+    public List<Integer> shards() {
+        return enabled ? IntStream.range(0, totalShards).boxed().toList() : List.of(currentShard);
+    }
+    
+    public <E> Map<Integer, List<E>> groupByShard(List<E> items, Function<E, String> accountOf) {
+        Map<Integer, List<E>> groups = new LinkedHashMap<>();
+        for (E item : items) {
+            groups.computeIfAbsent(shardFor(accountOf.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+    
+    public <T> T inTransaction(String accountId, TransactionCallback<T> action) {
+        return inTransactionOnShard(shardFor(accountId), action);
+    }
+    
+    public void runInTransaction(String accountId, Consumer<TransactionStatus> action) {
+        inTransaction(accountId, status -> {
+            action.accept(status);
+            return null;
+        });
+    }
+    
+    public void runInTransactionOnShard(int shard, Consumer<TransactionStatus> action) {
+        inTransactionOnShard(shard, status -> {
+            action.accept(status);
+            return null;
+        });
+    }
+    
+    // Joins the current transaction when it already runs on the target shard,
+    // otherwise suspends it and runs a separate one there
+    public <T> T inTransactionOnShard(int shard, TransactionCallback<T> action) {
+        if (!enabled) {
+            return requiredTemplate.execute(action);
+        }
+        
+        boolean active = TransactionSynchronizationManager.isActualTransactionActive();
+        Integer previous = ShardContext.get();
+        if (active && Objects.equals(previous, shard)) {
+            return requiredTemplate.execute(action);
+        }
+        
+        ShardContext.set(shard);
+        try {
+            return (active ? requiresNewTemplate : requiredTemplate).execute(action);
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+    
+    // Always a separate transaction, for work that must commit independently
+    // of whatever the caller is doing
+    public <T> T inNewTransaction(String accountId, TransactionCallback<T> action) {
+        Integer previous = ShardContext.get();
+        if (enabled) {
+            ShardContext.set(shardFor(accountId));
+        }
+        try {
+            return requiresNewTemplate.execute(action);
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+}
@@ -1,95 +1,197 @@
 package paymentapp.payment.worker;
 
 
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import paymentapp.payment.entity.Balance;
 import paymentapp.payment.entity.LedgerEntry;
+import paymentapp.payment.entity.ProjectionCheckpoint;
 import paymentapp.payment.event.BalanceUpdateEvent;
+import paymentapp.payment.metrics.PaymentMetrics;
 import paymentapp.payment.repository.BalanceRepository;
-import paymentapp.payment.repository.LedgerEntryRepository;
+import paymentapp.payment.repository.ProjectionCheckpointRepository;
+import paymentapp.payment.service.BalanceReadService;
+import paymentapp.payment.service.LedgerLegVerifier;
+import paymentapp.payment.service.StripedBalanceService;
+import paymentapp.payment.shard.ShardRouter;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Applies ledger.* events to balances one consumer batch at a time. Events
+// of an account are folded in memory against its locked balances row and
+// written back with a single UPDATE. A per-account, per-partition offset
+// watermark is committed in the same transaction, so redelivered events are
+// recognised and skipped.
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class BalanceProjector {
     
+    private static final String HOLD_CREATED = "ledger.hold_created";
+    private static final String HOLD_RELEASED = "ledger.hold_released";
+    private static final String CREDIT_POSTED = "ledger.credit_posted";
+    private static final String DEBIT_POSTED = "ledger.debit_posted";
+    private static final String STAGE = "projection";
+    
     private final BalanceRepository balanceRepository;
-    private final LedgerEntryRepository ledgerEntryRepository;
+    private final ProjectionCheckpointRepository checkpointRepository;
+    private final LedgerLegVerifier ledgerLegVerifier;
+    private final StripedBalanceService stripedBalanceService;
+    private final BalanceReadService balanceReadService;
+    private final ShardRouter shardRouter;
+    private final PaymentMetrics metrics;
     
-    @KafkaListener(topics = "ledger.hold_created", groupId = "balance-projector")
-    @Transactional
-    public void handleHoldCreated(BalanceUpdateEvent event) {
-        try {
-            // Verify the ledger entry exists with SUCCESS status
-            if (ledgerEntryExists(event.getTxId(), event.getAccountId(), 
-                    LedgerEntry.LegType.HOLD, LedgerEntry.TransactionStatus.SUCCESS)) {
-                
-                balanceRepository.createHold(event.getAccountId(), event.getAmount());
-                log.info("Balance updated for HOLD_CREATED: account={}, amount={}", 
-                        event.getAccountId(), event.getAmount());
-            }
-        } catch (Exception e) {
-            log.error("Error processing HOLD_CREATED balance update", e);
+    @KafkaListener(topics = {HOLD_CREATED, HOLD_RELEASED, CREDIT_POSTED, DEBIT_POSTED},
+            groupId = "balance-projector", batch = "true")
+    public void handleBalanceUpdates(List<ConsumerRecord<String, BalanceUpdateEvent>> records) {
+        Timer.Sample sample = metrics.startStage();
+        
+        Map<String, List<ConsumerRecord<String, BalanceUpdateEvent>>> byAccount = new LinkedHashMap<>();
+        for (ConsumerRecord<String, BalanceUpdateEvent> record : records) {
+            byAccount.computeIfAbsent(record.value().getAccountId(), key -> new ArrayList<>()).add(record);
         }
+        
+        // Accounts are locked in sorted order so concurrent projectors cannot deadlock
+        List<String> accounts = byAccount.keySet().stream().sorted().toList();
+        shardRouter.groupByShard(accounts, Function.identity())
+            .forEach((shard, shardAccounts) -> shardRouter.runInTransactionOnShard(shard, status ->
+                metrics.timeDb(STAGE, () -> {
+                    for (String accountId : shardAccounts) {
+                        projectAccount(accountId, byAccount.get(accountId));
+                    }
+                })));
+        
+        metrics.stopStage(sample, STAGE);
+        log.debug("PROJECTION batch processed: size={}, accounts={}", records.size(), accounts.size());
     }
     
-    @KafkaListener(topics = "ledger.hold_released", groupId = "balance-projector")
-    @Transactional
-    public void handleHoldReleased(BalanceUpdateEvent event) {
-        try {
-            if (ledgerEntryExists(event.getTxId(), event.getAccountId(), 
-                    LedgerEntry.LegType.RELEASE, LedgerEntry.TransactionStatus.SUCCESS)) {
-                
-                balanceRepository.releaseHold(event.getAccountId(), event.getAmount());
-                log.info("Balance updated for HOLD_RELEASED: account={}, amount={}", 
-                        event.getAccountId(), event.getAmount());
-            }
-        } catch (Exception e) {
-            log.error("Error processing HOLD_RELEASED balance update", e);
+    private void projectAccount(String accountId, List<ConsumerRecord<String, BalanceUpdateEvent>> records) {
+        boolean striped = stripedBalanceService.isStriped(accountId);
+        boolean hasDebit = records.stream().anyMatch(record -> DEBIT_POSTED.equals(record.topic()));
+        if (striped && hasDebit) {
+            // The debit check needs the full book balance
+            stripedBalanceService.foldSlots(accountId);
         }
-    }
-    
-    @KafkaListener(topics = "ledger.credit_posted", groupId = "balance-projector")
-    @Transactional
-    public void handleCreditPosted(BalanceUpdateEvent event) {
-        try {
-            if (ledgerEntryExists(event.getTxId(), event.getAccountId(), 
-                    LedgerEntry.LegType.CREDIT, LedgerEntry.TransactionStatus.SUCCESS)) {
-                
-                balanceRepository.creditAmount(event.getAccountId(), event.getAmount());
-                log.info("Balance updated for CREDIT_POSTED: account={}, amount={}", 
-                        event.getAccountId(), event.getAmount());
+        
+        Balance balance = balanceRepository.lockBalance(accountId).orElse(null);
+        if (balance == null) {
+            log.warn("No balance row for account {}, skipping {} balance updates", accountId, records.size());
+            metrics.outcome(STAGE, PaymentMetrics.REJECTED, records.size());
+            return;
+        }
+        
+        Map<String, Long> watermarks = new HashMap<>();
+        for (ProjectionCheckpoint checkpoint : checkpointRepository.findByAccountId(accountId)) {
+            watermarks.put(sourceOf(checkpoint.getTopic(), checkpoint.getPartitionId()), checkpoint.getAppliedOffset());
+        }
+        
+        BigDecimal book = balance.getBook();
+        BigDecimal available = balance.getAvailable();
+        BigDecimal openHold = balance.getOpenHold();
+        BigDecimal slotCredit = BigDecimal.ZERO;
+        String slotTxId = null;
+        Map<String, ConsumerRecord<String, BalanceUpdateEvent>> lastApplied = new LinkedHashMap<>();
+        int applied = 0;
+        int duplicates = 0;
+        
+        for (ConsumerRecord<String, BalanceUpdateEvent> record : records) {
+            String source = sourceOf(record.topic(), record.partition());
+            if (record.offset() <= watermarks.getOrDefault(source, -1L)) {
+                log.debug("Skipping already applied balance update: topic={}, partition={}, offset={}",
+                        record.topic(), record.partition(), record.offset());
+                duplicates++;
+                continue;
             }
-        } catch (Exception e) {
-            log.error("Error processing CREDIT_POSTED balance update", e);
+            watermarks.put(source, record.offset());
+            lastApplied.put(source, record);
+            
+            BalanceUpdateEvent event = record.value();
+            BigDecimal amount = event.getAmount();
+            if (!ledgerLegVerifier.exists(event.getTxId(), accountId, legTypeOf(record.topic()),
+                    LedgerEntry.TransactionStatus.SUCCESS)) {
+                continue;
+            }
+            
+            // Same guards as the single-row conditional updates
+            switch (record.topic()) {
+                case HOLD_CREATED -> {
+                    if (available.compareTo(amount) < 0) {
+                        log.warn("Skipping HOLD_CREATED beyond available balance: account={}, txId={}", accountId, event.getTxId());
+                        continue;
+                    }
+                    available = available.subtract(amount);
+                    openHold = openHold.add(amount);
+                }
+                case HOLD_RELEASED -> {
+                    if (openHold.compareTo(amount) < 0) {
+                        log.warn("Skipping HOLD_RELEASED beyond open hold: account={}, txId={}", accountId, event.getTxId());
+                        continue;
+                    }
+                    openHold = openHold.subtract(amount);
+                }
+                case CREDIT_POSTED -> {
+                    if (striped && !hasDebit) {
+                        slotCredit = slotCredit.add(amount);
+                        slotTxId = slotTxId == null ? event.getTxId() : slotTxId;
+                    } else {
+                        book = book.add(amount);
+                    }
+                }
+                case DEBIT_POSTED -> {
+                    if (book.compareTo(amount) < 0) {
+                        log.warn("Skipping DEBIT_POSTED beyond book balance: account={}, txId={}", accountId, event.getTxId());
+                        continue;
+                    }
+                    book = book.subtract(amount);
+                }
+            }
+            applied++;
+        }
+        
+        BigDecimal bookDelta = book.subtract(balance.getBook());
+        BigDecimal availableDelta = available.subtract(balance.getAvailable());
+        BigDecimal openHoldDelta = openHold.subtract(balance.getOpenHold());
+        if (bookDelta.signum() != 0 || availableDelta.signum() != 0 || openHoldDelta.signum() != 0) {
+            balanceRepository.applyDeltas(accountId, bookDelta, availableDelta, openHoldDelta);
+        }
+        if (slotCredit.signum() != 0) {
+            stripedBalanceService.creditAmount(accountId, slotTxId, slotCredit);
+        }
+        
+        lastApplied.values().forEach(record ->
+            checkpointRepository.advance(accountId, record.topic(), record.partition(), record.offset()));
+        metrics.outcome(STAGE, PaymentMetrics.SUCCESS, applied);
+        metrics.outcome(STAGE, PaymentMetrics.DUPLICATE, duplicates);
+        metrics.outcome(STAGE, PaymentMetrics.REJECTED, records.size() - applied - duplicates);
+        
+        if (applied > 0) {
+            balanceReadService.refreshAfterCommit(accountId);
+            log.info("Balance updated: account={}, events={}, book={}, available={}, openHold={}",
+                    accountId, applied, bookDelta, availableDelta, openHoldDelta);
         }
     }
     
-    @KafkaListener(topics = "ledger.debit_posted", groupId = "balance-projector")
-    @Transactional
-    public void handleDebitPosted(BalanceUpdateEvent event) {
-        try {
-            if (ledgerEntryExists(event.getTxId(), event.getAccountId(), 
-                    LedgerEntry.LegType.DEBIT, LedgerEntry.TransactionStatus.SUCCESS)) {
-                
-                balanceRepository.debitAmount(event.getAccountId(), event.getAmount());
-                log.info("Balance updated for DEBIT_POSTED: account={}, amount={}", 
-                        event.getAccountId(), event.getAmount());
-            }
-        } catch (Exception e) {
-            log.error("Error processing DEBIT_POSTED balance update", e);
-        }
+    private static String sourceOf(String topic, int partition) {
+        return topic + "-" + partition;
     }
     
-    private boolean ledgerEntryExists(String txId, String accountId, 
-            LedgerEntry.LegType legType, LedgerEntry.TransactionStatus status) {
-        return ledgerEntryRepository.findByTxIdOrderByCreatedAt(txId)
-                .stream()
-                .anyMatch(entry -> entry.getAccountId().equals(accountId) 
-                        && entry.getLegType() == legType 
-                        && entry.getStatus() == status);
+    private static LedgerEntry.LegType legTypeOf(String topic) {
+        return switch (topic) {
+            case HOLD_CREATED -> LedgerEntry.LegType.HOLD;
+            case HOLD_RELEASED -> LedgerEntry.LegType.RELEASE;
+            case CREDIT_POSTED -> LedgerEntry.LegType.CREDIT;
+            case DEBIT_POSTED -> LedgerEntry.LegType.DEBIT;
+            default -> throw new IllegalArgumentException("Unexpected topic: " + topic);
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package paymentapp.payment.worker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import paymentapp.payment.metrics.PaymentMetrics;
+import paymentapp.payment.repository.JdbcBatchRepository;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// Runs a batch listener's poll in one transaction per shard. If a shard's
+// transaction fails (the JDBC batch insert, or a repository call that marked
+// it rollback-only), its records are retried one per transaction, as a failed
+// group commit is in PaymentService, so one bad record neither rolls back nor
+// skips the rest of the poll. A record that still fails on its own is handed
+// to the container's error handler with BatchListenerFailedException: offsets
+// before it are committed, and it and the records after it are redelivered.
+// Those already written are dropped by their guarded status transitions.
+@Slf4j
+final class BatchPoll {
+
+    private BatchPoll() {
+    }
+
+    // The processor returns the record's outcome; outcomes are counted once the
+    // transaction that wrote them has committed
+    static <E> void process(String stage, List<E> events, Function<E, String> accountOf,
+            ShardRouter shardRouter, JdbcBatchRepository jdbcBatchRepository, PaymentMetrics metrics,
+            BiFunction<E, WorkerBatch, String> processor) {
+        List<Integer> indexes = IntStream.range(0, events.size()).boxed().toList();
+        Map<Integer, List<Integer>> byShard = shardRouter.groupByShard(indexes, i -> accountOf.apply(events.get(i)));
+
+        int failedIndex = -1;
+        Exception failure = null;
+        for (Map.Entry<Integer, List<Integer>> entry : byShard.entrySet()) {
+            int shard = entry.getKey();
+            List<E> shardEvents = entry.getValue().stream().map(events::get).toList();
+            try {
+                List<String> outcomes = shardRouter.inTransactionOnShard(shard, status ->
+                    processAndFlush(stage, shardEvents, jdbcBatchRepository, metrics, processor));
+                outcomes.forEach(outcome -> metrics.outcome(stage, outcome));
+                continue;
+            } catch (Exception e) {
+                log.warn("{} batch of {} records failed on shard {}, processing them one by one",
+                        stage, shardEvents.size(), shard, e);
+            }
+
+            for (int i : entry.getValue()) {
+                E event = events.get(i);
+                try {
+                    List<String> outcomes = shardRouter.inTransactionOnShard(shard, status ->
+                        processAndFlush(stage, List.of(event), jdbcBatchRepository, metrics, processor));
+                    metrics.outcome(stage, outcomes.get(0));
+                } catch (Exception e) {
+                    log.error("{} record {} of the poll failed on its own", stage, i, e);
+                    metrics.outcome(stage, PaymentMetrics.ERROR);
+                    if (failure == null || i < failedIndex) {
+                        failedIndex = i;
+                        failure = e;
+                    }
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw new BatchListenerFailedException(stage + " record failed", failure, failedIndex);
+        }
+    }
+
+    private static <E> List<String> processAndFlush(String stage, List<E> events,
+            JdbcBatchRepository jdbcBatchRepository, PaymentMetrics metrics,
+            BiFunction<E, WorkerBatch, String> processor) {
+        WorkerBatch batch = new WorkerBatch();
+        List<String> outcomes = new ArrayList<>(events.size());
+        for (E event : events) {
+            outcomes.add(processor.apply(event, batch));
+        }
+        metrics.timeDb(stage, () -> batch.flush(jdbcBatchRepository));
+        return outcomes;
+    }
+}
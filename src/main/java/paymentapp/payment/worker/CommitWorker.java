@@ -1,40 +1,66 @@
 package paymentapp.payment.worker;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import paymentapp.payment.entity.LedgerEntry;
-import paymentapp.payment.entity.OutboxEvent;
 import paymentapp.payment.entity.TransactionStatusEntity;
 import paymentapp.payment.event.TransferCommittedEvent;
 import paymentapp.payment.event.TransferCreditedEvent;
-import paymentapp.payment.repository.BalanceRepository;
-import paymentapp.payment.repository.LedgerEntryRepository;
-import paymentapp.payment.repository.OutboxEventRepository;
+import paymentapp.payment.metrics.PaymentMetrics;
+import paymentapp.payment.repository.JdbcBatchRepository;
 import paymentapp.payment.repository.TransactionStatusRepository;
+import paymentapp.payment.service.HoldExpiryTimer;
+import paymentapp.payment.service.OutboxEventFactory;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class CommitWorker {
-    
-    private final BalanceRepository balanceRepository;
-    private final LedgerEntryRepository ledgerEntryRepository;
+
+    private static final String STAGE = "commit";
+
     private final TransactionStatusRepository transactionStatusRepository;
-    private final OutboxEventRepository outboxEventRepository;
-    private final ObjectMapper objectMapper;
-    
-    @KafkaListener(topics = "transfer.credited", groupId = "commit-worker")
-    @Transactional
+    private final JdbcBatchRepository jdbcBatchRepository;
+    private final OutboxEventFactory outboxEventFactory;
+    private final HoldExpiryTimer holdExpiryTimer;
+    private final ShardRouter shardRouter;
+    private final PaymentMetrics metrics;
+
+    @KafkaListener(topics = "transfer.credited", groupId = "commit-worker",
+            autoStartup = "#{!${payment.worker.batch-mode:false}}")
     public void handleTransferCredited(TransferCreditedEvent event) {
+        Timer.Sample sample = metrics.startStage();
+        shardRouter.runInTransaction(event.getSourceAccount(), status -> {
+            WorkerBatch batch = new WorkerBatch();
+            metrics.outcome(STAGE, processCommit(event, batch));
+            metrics.timeDb(STAGE, () -> batch.flush(jdbcBatchRepository));
+        });
+        metrics.stopStage(sample, STAGE);
+    }
+
+    @KafkaListener(topics = "transfer.credited", groupId = "commit-worker", batch = "true",
+            autoStartup = "${payment.worker.batch-mode:false}")
+    public void handleTransferCreditedBatch(List<TransferCreditedEvent> events) {
+        Timer.Sample sample = metrics.startStage();
+        BatchPoll.process(STAGE, events, TransferCreditedEvent::getSourceAccount,
+            shardRouter, jdbcBatchRepository, metrics, this::processCommit);
+        metrics.stopStage(sample, STAGE);
+        log.debug("COMMIT batch processed: size={}", events.size());
+    }
+
+    private String processCommit(TransferCreditedEvent event, WorkerBatch batch) {
         try {
             log.info("Processing COMMIT for txId: {}", event.getTxId());
-            
+
+            WorkerBatch writes = new WorkerBatch();
+
             // Create debit entry
             LedgerEntry debitEntry = new LedgerEntry();
             debitEntry.setTxId(event.getTxId());
@@ -43,8 +69,8 @@ public class CommitWorker {
             debitEntry.setAmount(event.getAmount());
             debitEntry.setStatus(LedgerEntry.TransactionStatus.SUCCESS);
             debitEntry.setDescription("Debit for transfer to " + event.getDestinationAccount());
-            ledgerEntryRepository.save(debitEntry);
-            
+            writes.addLedgerEntry(debitEntry);
+
             // Create release entry
             LedgerEntry releaseEntry = new LedgerEntry();
             releaseEntry.setTxId(event.getTxId());
@@ -53,15 +79,8 @@ public class CommitWorker {
             releaseEntry.setAmount(event.getAmount());
             releaseEntry.setStatus(LedgerEntry.TransactionStatus.SUCCESS);
             releaseEntry.setDescription("Release hold for transfer to " + event.getDestinationAccount());
-            ledgerEntryRepository.save(releaseEntry);
-            
-            // Update transaction status
-            transactionStatusRepository.findById(event.getTxId())
-                .ifPresent(tx -> {
-                    tx.setStatus(TransactionStatusEntity.Status.COMMITTED);
-                    transactionStatusRepository.save(tx);
-                });
-            
+            writes.addLedgerEntry(releaseEntry);
+
             // Publish transfer.committed event
             TransferCommittedEvent committedEvent = new TransferCommittedEvent();
             committedEvent.setTxId(event.getTxId());
@@ -69,18 +88,29 @@ public class CommitWorker {
             committedEvent.setDestinationAccount(event.getDestinationAccount());
             committedEvent.setAmount(event.getAmount());
             committedEvent.setTimestamp(System.currentTimeMillis());
-            
-            publishEvent("transfer.committed", committedEvent, event.getSourceAccount());
-            
+
+            writes.addOutboxEvent(outboxEventFactory.create(
+                event.getTxId(), "transfer.committed", committedEvent, event.getSourceAccount()));
+
+            // Update transaction status; a redelivered event finds it COMMITTED already
+            if (!transactionStatusRepository.transition(event.getTxId(), TransactionStatusEntity.Status.COMMITTED)) {
+                log.warn("Skipping COMMIT for txId: {} - transfer is no longer CREDITED", event.getTxId());
+                return PaymentMetrics.DUPLICATE;
+            }
+            batch.append(writes);
+            holdExpiryTimer.disarmAfterCommit(event.getTxId());
+
             log.info("COMMIT successful for txId: {}, amount: {}", event.getTxId(), event.getAmount());
-            
+            return PaymentMetrics.SUCCESS;
+
         } catch (Exception e) {
             log.error("Error processing COMMIT for txId: {}", event.getTxId(), e);
-            handleCommitError(event, e.getMessage());
+            handleCommitError(event, e.getMessage(), batch);
+            return PaymentMetrics.ERROR;
         }
     }
-    
-    private void handleCommitError(TransferCreditedEvent event, String errorMessage) {
+
+    private void handleCommitError(TransferCreditedEvent event, String errorMessage, WorkerBatch batch) {
         try {
             // Create failed debit entry
             LedgerEntry debitEntry = new LedgerEntry();
@@ -90,33 +120,16 @@ public class CommitWorker {
             debitEntry.setAmount(event.getAmount());
             debitEntry.setStatus(LedgerEntry.TransactionStatus.FAILED);
             debitEntry.setDescription("Error during debit: " + errorMessage);
-            ledgerEntryRepository.save(debitEntry);
-            
+            batch.addLedgerEntry(debitEntry);
+
             // Update transaction status
-            transactionStatusRepository.findById(event.getTxId())
-                .ifPresent(tx -> {
-                    tx.setStatus(TransactionStatusEntity.Status.REJECTED);
-                    tx.setErrorMessage(errorMessage);
-                    transactionStatusRepository.save(tx);
-                });
-            
+            transactionStatusRepository.transition(
+                event.getTxId(), TransactionStatusEntity.Status.REJECTED, errorMessage);
+
             // TODO: Implement compensation - reverse the credit
-            
+
         } catch (Exception e) {
             log.error("Error handling commit error for txId: {}", event.getTxId(), e);
         }
     }
-    
-    private void publishEvent(String eventType, Object event, String partitionKey) {
-        try {
-            OutboxEvent outboxEvent = new OutboxEvent();
-            outboxEvent.setTxId(((TransferCommittedEvent) event).getTxId());
-            outboxEvent.setEventType(eventType);
-            outboxEvent.setPayload(objectMapper.writeValueAsString(event));
-            outboxEvent.setPartitionKey(partitionKey);
-            outboxEventRepository.save(outboxEvent);
-        } catch (Exception e) {
-            log.error("Error publishing event: {}", eventType, e);
-        }
-    }
-}
\ No newline at end of file
+}
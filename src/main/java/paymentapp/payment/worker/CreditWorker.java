@@ -1,51 +1,78 @@
 package paymentapp.payment.worker;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import paymentapp.payment.entity.Account;
+import paymentapp.payment.cache.AccountStatusCache;
 import paymentapp.payment.entity.LedgerEntry;
-import paymentapp.payment.entity.OutboxEvent;
 import paymentapp.payment.entity.TransactionStatusEntity;
 import paymentapp.payment.event.TransferCreditedEvent;
 import paymentapp.payment.event.TransferHeldEvent;
 import paymentapp.payment.event.TransferRejectedEvent;
-import paymentapp.payment.repository.AccountRepository;
-import paymentapp.payment.repository.LedgerEntryRepository;
-import paymentapp.payment.repository.OutboxEventRepository;
+import paymentapp.payment.metrics.PaymentMetrics;
+import paymentapp.payment.repository.JdbcBatchRepository;
 import paymentapp.payment.repository.TransactionStatusRepository;
+import paymentapp.payment.service.HoldExpiryTimer;
+import paymentapp.payment.service.LedgerLegVerifier;
+import paymentapp.payment.service.OutboxEventFactory;
+import paymentapp.payment.shard.ShardRouter;
+
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class CreditWorker {
-    
-    private final LedgerEntryRepository ledgerEntryRepository;
+
+    private static final String STAGE = "credit";
+
     private final TransactionStatusRepository transactionStatusRepository;
-    private final OutboxEventRepository outboxEventRepository;
-    private final AccountRepository accountRepository;
-    private final ObjectMapper objectMapper;
-    
-    @KafkaListener(topics = "transfer.held", groupId = "credit-worker")
-    @Transactional
+    private final AccountStatusCache accountStatusCache;
+    private final JdbcBatchRepository jdbcBatchRepository;
+    private final LedgerLegVerifier ledgerLegVerifier;
+    private final OutboxEventFactory outboxEventFactory;
+    private final HoldExpiryTimer holdExpiryTimer;
+    private final ShardRouter shardRouter;
+    private final PaymentMetrics metrics;
+
+    @KafkaListener(topics = "transfer.held", groupId = "credit-worker",
+            autoStartup = "#{!${payment.worker.batch-mode:false}}")
     public void handleTransferHeld(TransferHeldEvent event) {
+        Timer.Sample sample = metrics.startStage();
+        shardRouter.runInTransaction(event.getDestinationAccount(), status -> {
+            WorkerBatch batch = new WorkerBatch();
+            metrics.outcome(STAGE, processCredit(event, batch));
+            metrics.timeDb(STAGE, () -> batch.flush(jdbcBatchRepository));
+        });
+        metrics.stopStage(sample, STAGE);
+    }
+
+    @KafkaListener(topics = "transfer.held", groupId = "credit-worker", batch = "true",
+            autoStartup = "${payment.worker.batch-mode:false}")
+    public void handleTransferHeldBatch(List<TransferHeldEvent> events) {
+        Timer.Sample sample = metrics.startStage();
+        BatchPoll.process(STAGE, events, TransferHeldEvent::getDestinationAccount,
+            shardRouter, jdbcBatchRepository, metrics, this::processCredit);
+        metrics.stopStage(sample, STAGE);
+        log.debug("CREDIT batch processed: size={}", events.size());
+    }
+
+    private String processCredit(TransferHeldEvent event, WorkerBatch batch) {
         try {
             log.info("Processing CREDIT for txId: {}", event.getTxId());
-            
+
             // Validate destination account
-            if (accountRepository.findByAccountIdAndStatus(
-                    event.getDestinationAccount(), 
-                    Account.AccountStatus.ACTIVE).isEmpty()) {
-                
-                handleCreditError(event, "Destination account not found or inactive");
-                return;
+            if (!accountStatusCache.isActive(event.getDestinationAccount())) {
+
+                handleCreditError(event, "Destination account not found or inactive", batch);
+                return PaymentMetrics.REJECTED;
             }
-            
+
+            WorkerBatch writes = new WorkerBatch();
+
             // Create credit entry
             LedgerEntry creditEntry = new LedgerEntry();
             creditEntry.setTxId(event.getTxId());
@@ -54,15 +81,8 @@ public class CreditWorker {
             creditEntry.setAmount(event.getAmount());
             creditEntry.setStatus(LedgerEntry.TransactionStatus.SUCCESS);
             creditEntry.setDescription("Credit from transfer from " + event.getSourceAccount());
-            ledgerEntryRepository.save(creditEntry);
-            
-            // Update transaction status
-            transactionStatusRepository.findById(event.getTxId())
-                .ifPresent(tx -> {
-                    tx.setStatus(TransactionStatusEntity.Status.CREDITED);
-                    transactionStatusRepository.save(tx);
-                });
-            
+            writes.addLedgerEntry(creditEntry);
+
             // Publish transfer.credited event
             TransferCreditedEvent creditedEvent = new TransferCreditedEvent();
             creditedEvent.setTxId(event.getTxId());
@@ -70,19 +90,51 @@ public class CreditWorker {
             creditedEvent.setDestinationAccount(event.getDestinationAccount());
             creditedEvent.setAmount(event.getAmount());
             creditedEvent.setTimestamp(System.currentTimeMillis());
-            
-            publishEvent("transfer.credited", creditedEvent, event.getSourceAccount());
-            
+
+            writes.addOutboxEvent(outboxEventFactory.create(
+                event.getTxId(), "transfer.credited", creditedEvent, event.getSourceAccount()));
+
+            // Update transaction status; it lives on the source account's shard,
+            // which for a cross-shard transfer is a separate transaction
+            if (!claimCredit(event)) {
+                log.warn("Skipping CREDIT for txId: {} - transfer is no longer HELD", event.getTxId());
+                return PaymentMetrics.DUPLICATE;
+            }
+            batch.append(writes);
+            // The transfer is past the point where its hold may time out
+            holdExpiryTimer.disarmAfterCommit(event.getTxId());
+
             log.info("CREDIT successful for txId: {}, amount: {}", event.getTxId(), event.getAmount());
-            
+            return PaymentMetrics.SUCCESS;
+
         } catch (Exception e) {
             log.error("Error processing CREDIT for txId: {}", event.getTxId(), e);
-            handleCreditError(event, e.getMessage());
+            handleCreditError(event, e.getMessage(), batch);
+            return PaymentMetrics.ERROR;
         }
     }
-    
-    private void handleCreditError(TransferHeldEvent event, String errorMessage) {
+
+    // A cross-shard status update commits before the credit leg does; if the
+    // destination transaction then rolled back, the redelivered event finds the
+    // transfer CREDITED without a leg and has to write it again
+    private boolean claimCredit(TransferHeldEvent event) {
+        boolean claimed = shardRouter.inTransaction(event.getSourceAccount(), status ->
+            transactionStatusRepository.transition(event.getTxId(), TransactionStatusEntity.Status.CREDITED));
+        if (claimed) {
+            return true;
+        }
+        boolean credited = shardRouter.inTransaction(event.getSourceAccount(), status ->
+            transactionStatusRepository.findById(event.getTxId())
+                .filter(tx -> tx.getStatus() == TransactionStatusEntity.Status.CREDITED)
+                .isPresent());
+        return credited && !ledgerLegVerifier.exists(event.getTxId(), event.getDestinationAccount(),
+            LedgerEntry.LegType.CREDIT, LedgerEntry.TransactionStatus.SUCCESS);
+    }
+
+    private void handleCreditError(TransferHeldEvent event, String errorMessage, WorkerBatch batch) {
         try {
+            WorkerBatch writes = new WorkerBatch();
+
             // Create failed credit entry
             LedgerEntry creditEntry = new LedgerEntry();
             creditEntry.setTxId(event.getTxId());
@@ -91,16 +143,13 @@ public class CreditWorker {
             creditEntry.setAmount(event.getAmount());
             creditEntry.setStatus(LedgerEntry.TransactionStatus.FAILED);
             creditEntry.setDescription("Error during credit: " + errorMessage);
-            ledgerEntryRepository.save(creditEntry);
-            
+            writes.addLedgerEntry(creditEntry);
+
             // Update transaction status
-            transactionStatusRepository.findById(event.getTxId())
-                .ifPresent(tx -> {
-                    tx.setStatus(TransactionStatusEntity.Status.REJECTED);
-                    tx.setErrorMessage(errorMessage);
-                    transactionStatusRepository.save(tx);
-                });
-            
+            shardRouter.runInTransaction(event.getSourceAccount(), status ->
+                transactionStatusRepository.transition(
+                    event.getTxId(), TransactionStatusEntity.Status.REJECTED, errorMessage));
+
             // Publish rejection event
             TransferRejectedEvent rejectedEvent = new TransferRejectedEvent();
             rejectedEvent.setTxId(event.getTxId());
@@ -109,24 +158,13 @@ public class CreditWorker {
             rejectedEvent.setAmount(event.getAmount());
             rejectedEvent.setReason(errorMessage);
             rejectedEvent.setTimestamp(System.currentTimeMillis());
-            
-            publishEvent("transfer.rejected", rejectedEvent, event.getSourceAccount());
-            
+
+            writes.addOutboxEvent(outboxEventFactory.create(
+                event.getTxId(), "transfer.rejected", rejectedEvent, event.getSourceAccount()));
+            batch.append(writes);
+
         } catch (Exception e) {
             log.error("Error handling credit error for txId: {}", event.getTxId(), e);
         }
     }
-    
-    private void publishEvent(String eventType, Object event, String partitionKey) {
-        try {
-            OutboxEvent outboxEvent = new OutboxEvent();
-            outboxEvent.setTxId(((TransferCreditedEvent) event).getTxId());
-            outboxEvent.setEventType(eventType);
-            outboxEvent.setPayload(objectMapper.writeValueAsString(event));
-            outboxEvent.setPartitionKey(partitionKey);
-            outboxEventRepository.save(outboxEvent);
-        } catch (Exception e) {
-            log.error("Error publishing event: {}", eventType, e);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,70 +1,167 @@
 package paymentapp.payment.worker;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import paymentapp.payment.cache.AccountStatusCache;
 import paymentapp.payment.entity.LedgerEntry;
-import paymentapp.payment.entity.OutboxEvent;
 import paymentapp.payment.entity.TransactionStatusEntity;
+import paymentapp.payment.event.TransferCommittedEvent;
 import paymentapp.payment.event.TransferHeldEvent;
 import paymentapp.payment.event.TransferRejectedEvent;
 import paymentapp.payment.event.TransferRequestedEvent;
+import paymentapp.payment.metrics.PaymentMetrics;
 import paymentapp.payment.repository.BalanceRepository;
-import paymentapp.payment.repository.LedgerEntryRepository;
-import paymentapp.payment.repository.OutboxEventRepository;
+import paymentapp.payment.repository.JdbcBatchRepository;
 import paymentapp.payment.repository.TransactionStatusRepository;
+import paymentapp.payment.service.HoldExpiryTimer;
+import paymentapp.payment.service.HotAccountHoldEngine;
+import paymentapp.payment.service.OutboxEventFactory;
+import paymentapp.payment.shard.ShardRouter;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class HoldWorker {
-    
+public class HoldWorker implements ConsumerSeekAware {
+
+    private static final String STAGE = "hold";
+
     private final BalanceRepository balanceRepository;
-    private final LedgerEntryRepository ledgerEntryRepository;
     private final TransactionStatusRepository transactionStatusRepository;
-    private final OutboxEventRepository outboxEventRepository;
+    private final JdbcBatchRepository jdbcBatchRepository;
+    private final OutboxEventFactory outboxEventFactory;
+    private final HotAccountHoldEngine holdEngine;
+    private final HoldExpiryTimer holdExpiryTimer;
+    private final ShardRouter shardRouter;
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final ObjectMapper objectMapper;
-    
-    @KafkaListener(topics = "transfer.requested", groupId = "hold-worker")
-    @Transactional
-    public void handleTransferRequested(TransferRequestedEvent event) {
+    private final AccountStatusCache accountStatusCache;
+    private final PaymentMetrics metrics;
+
+    // Hot accounts seen on each transfer.requested partition of this consumer
+    private final Map<Integer, Set<String>> hotAccountsByPartition = new ConcurrentHashMap<>();
+
+    @Value("${payment.worker.fused-saga:false}")
+    private boolean fusedSaga;
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        // Hot accounts follow their partition; the next owner reloads them.
+        // Accounts of the partitions this consumer keeps stay loaded.
+        for (TopicPartition partition : partitions) {
+            Set<String> accounts = hotAccountsByPartition.remove(partition.partition());
+            if (accounts != null) {
+                holdEngine.evict(accounts);
+            }
+        }
+    }
+
+    @KafkaListener(topics = "transfer.requested", groupId = "hold-worker",
+            autoStartup = "#{!${payment.worker.batch-mode:false}}")
+    public void handleTransferRequested(TransferRequestedEvent event,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) int partition) {
+        Timer.Sample sample = metrics.startStage();
+        trackHotAccount(partition, event.getSourceAccount());
+        try {
+            shardRouter.runInTransaction(event.getSourceAccount(), status -> {
+                WorkerBatch batch = new WorkerBatch();
+                metrics.outcome(STAGE, processHold(event, batch));
+                metrics.timeDb(STAGE, () -> batch.flush(jdbcBatchRepository));
+            });
+        } catch (HoldFailedException e) {
+            // Rolled back, and the rejection written after it
+        }
+        metrics.stopStage(sample, STAGE);
+    }
+
+    // Batch mode: the whole poll runs in one transaction per shard (normally a
+    // single one, since partitions map to shards) and the container commits
+    // the offsets only after those transactions have committed. See BatchPoll
+    // for what happens when one of them fails; a record failing in processHold
+    // fails its shard's transaction, and is rejected once that has rolled back.
+    @KafkaListener(topics = "transfer.requested", groupId = "hold-worker", batch = "true",
+            autoStartup = "${payment.worker.batch-mode:false}")
+    public void handleTransferRequestedBatch(List<TransferRequestedEvent> events,
+            @Header(KafkaHeaders.RECEIVED_PARTITION) List<Integer> partitions) {
+        Timer.Sample sample = metrics.startStage();
+        for (int i = 0; i < events.size(); i++) {
+            trackHotAccount(partitions.get(i), events.get(i).getSourceAccount());
+        }
+        BatchPoll.process(STAGE, events, TransferRequestedEvent::getSourceAccount,
+            shardRouter, jdbcBatchRepository, metrics, this::processHold);
+        metrics.stopStage(sample, STAGE);
+        log.debug("HOLD batch processed: size={}", events.size());
+    }
+
+    private void trackHotAccount(int partition, String accountId) {
+        if (holdEngine.owns(accountId)) {
+            hotAccountsByPartition.computeIfAbsent(partition, key -> ConcurrentHashMap.newKeySet()).add(accountId);
+        }
+    }
+
+    private String processHold(TransferRequestedEvent event, WorkerBatch batch) {
         try {
             log.info("Processing HOLD for txId: {}", event.getTxId());
-            
-            // Try to create hold using CAS (Compare-And-Swap)
-            int holdCreated = balanceRepository.createHold(
-                event.getSourceAccount(), 
-                event.getAmount()
-            );
-            
+
+            // Claim the transition before reserving funds, so a redelivered
+            // request is dropped here; a failed hold moves on to REJECTED
+            if (!transactionStatusRepository.transition(event.getTxId(), TransactionStatusEntity.Status.HELD)) {
+                log.warn("Skipping HOLD for txId: {} - transfer is no longer REQUESTED", event.getTxId());
+                return PaymentMetrics.DUPLICATE;
+            }
+
+            // Rows for this event are staged separately so a failure halfway
+            // does not leave partial writes in the batch
+            WorkerBatch writes = new WorkerBatch();
+
+            // Try to create hold using CAS (Compare-And-Swap); hot accounts are
+            // decided in memory and written back to balances asynchronously
+            int holdCreated;
+            if (holdEngine.owns(event.getSourceAccount())) {
+                holdCreated = holdEngine.tryHold(event.getSourceAccount(), event.getAmount()) ? 1 : 0;
+            } else {
+                holdCreated = balanceRepository.createHold(
+                    event.getSourceAccount(),
+                    event.getAmount()
+                );
+            }
+
             LedgerEntry holdEntry = new LedgerEntry();
             holdEntry.setTxId(event.getTxId());
             holdEntry.setAccountId(event.getSourceAccount());
             holdEntry.setLegType(LedgerEntry.LegType.HOLD);
             holdEntry.setAmount(event.getAmount());
             holdEntry.setDescription("Hold for transfer to " + event.getDestinationAccount());
-            
+
             if (holdCreated > 0) {
                 // Successfully created hold
                 holdEntry.setStatus(LedgerEntry.TransactionStatus.SUCCESS);
-                ledgerEntryRepository.save(holdEntry);
-                
-                // Update transaction status
-                transactionStatusRepository.findById(event.getTxId())
-                    .ifPresent(tx -> {
-                        tx.setStatus(TransactionStatusEntity.Status.HELD);
-                        transactionStatusRepository.save(tx);
-                    });
-                
+                writes.addLedgerEntry(holdEntry);
+
+                if (canSettleLocally(event)) {
+                    settleLocally(event, writes);
+                    batch.append(writes);
+                    log.info("HOLD settled in one transaction for txId: {}, amount: {}", event.getTxId(), event.getAmount());
+                    return PaymentMetrics.FUSED;
+                }
+
                 // Publish transfer.held event
                 TransferHeldEvent heldEvent = new TransferHeldEvent();
                 heldEvent.setTxId(event.getTxId());
@@ -72,25 +169,26 @@ public class HoldWorker {
                 heldEvent.setDestinationAccount(event.getDestinationAccount());
                 heldEvent.setAmount(event.getAmount());
                 heldEvent.setTimestamp(System.currentTimeMillis());
-                
-                publishEvent("transfer.held", heldEvent, event.getSourceAccount());
-                
+
+                // Keyed by destination so the credit worker consumes it on the destination's shard
+                writes.addOutboxEvent(outboxEventFactory.create(
+                    event.getTxId(), "transfer.held", heldEvent, event.getDestinationAccount()));
+                batch.append(writes);
+                holdExpiryTimer.armAfterCommit(event.getTxId(), event.getSourceAccount());
+
                 log.info("HOLD successful for txId: {}, amount: {}", event.getTxId(), event.getAmount());
-                
+                return PaymentMetrics.SUCCESS;
+
             } else {
                 // Insufficient funds
                 holdEntry.setStatus(LedgerEntry.TransactionStatus.FAILED);
                 holdEntry.setDescription("Insufficient funds for transfer");
-                ledgerEntryRepository.save(holdEntry);
-                
+                writes.addLedgerEntry(holdEntry);
+
                 // Update transaction status
-                transactionStatusRepository.findById(event.getTxId())
-                    .ifPresent(tx -> {
-                        tx.setStatus(TransactionStatusEntity.Status.REJECTED);
-                        tx.setErrorMessage("Insufficient funds");
-                        transactionStatusRepository.save(tx);
-                    });
-                
+                transactionStatusRepository.transition(
+                    event.getTxId(), TransactionStatusEntity.Status.REJECTED, "Insufficient funds");
+
                 // Publish transfer.rejected event
                 TransferRejectedEvent rejectedEvent = new TransferRejectedEvent();
                 rejectedEvent.setTxId(event.getTxId());
@@ -99,20 +197,89 @@ public class HoldWorker {
                 rejectedEvent.setAmount(event.getAmount());
                 rejectedEvent.setReason("Insufficient funds");
                 rejectedEvent.setTimestamp(System.currentTimeMillis());
-                
-                publishEvent("transfer.rejected", rejectedEvent, event.getSourceAccount());
-                
+
+                writes.addOutboxEvent(outboxEventFactory.create(
+                    event.getTxId(), "transfer.rejected", rejectedEvent, event.getSourceAccount()));
+                batch.append(writes);
+
                 log.warn("HOLD failed for txId: {} - Insufficient funds", event.getTxId());
+                return PaymentMetrics.INSUFFICIENT_FUNDS;
             }
-            
+
         } catch (Exception e) {
             log.error("Error processing HOLD for txId: {}", event.getTxId(), e);
-            handleHoldError(event, e.getMessage());
+            rejectAfterRollback(event, e.getMessage());
+            throw new HoldFailedException(e);
         }
     }
-    
-    private void handleHoldError(TransferRequestedEvent event, String errorMessage) {
+
+    // Fused saga: when the destination lives in this shard's database, the
+    // credit and commit steps can run in the hold's transaction instead of
+    // after two more Kafka hops
+    private boolean canSettleLocally(TransferRequestedEvent event) {
+        return fusedSaga
+            && shardRouter.shardFor(event.getDestinationAccount()) == shardRouter.shardFor(event.getSourceAccount())
+            && accountStatusCache.isActive(event.getDestinationAccount());
+    }
+
+    // Writes what CreditWorker and CommitWorker would have: the CREDIT, DEBIT
+    // and RELEASE legs, the COMMITTED status and transfer.committed. The
+    // transfer.held and transfer.credited events are skipped, and so is the
+    // hold expiry timer, since the hold never stays open.
+    private void settleLocally(TransferRequestedEvent event, WorkerBatch writes) throws Exception {
+        writes.addLedgerEntry(successLeg(event.getTxId(), event.getDestinationAccount(), LedgerEntry.LegType.CREDIT,
+            event.getAmount(), "Credit from transfer from " + event.getSourceAccount()));
+        writes.addLedgerEntry(successLeg(event.getTxId(), event.getSourceAccount(), LedgerEntry.LegType.DEBIT,
+            event.getAmount(), "Debit for transfer to " + event.getDestinationAccount()));
+        writes.addLedgerEntry(successLeg(event.getTxId(), event.getSourceAccount(), LedgerEntry.LegType.RELEASE,
+            event.getAmount(), "Release hold for transfer to " + event.getDestinationAccount()));
+
+        TransferCommittedEvent committedEvent = new TransferCommittedEvent();
+        committedEvent.setTxId(event.getTxId());
+        committedEvent.setSourceAccount(event.getSourceAccount());
+        committedEvent.setDestinationAccount(event.getDestinationAccount());
+        committedEvent.setAmount(event.getAmount());
+        committedEvent.setTimestamp(System.currentTimeMillis());
+
+        writes.addOutboxEvent(outboxEventFactory.create(
+            event.getTxId(), "transfer.committed", committedEvent, event.getSourceAccount()));
+
+        // Last, so nothing above can fail after the transfer is marked COMMITTED
+        transactionStatusRepository.transition(event.getTxId(), TransactionStatusEntity.Status.COMMITTED);
+    }
+
+    private static LedgerEntry successLeg(String txId, String accountId, LedgerEntry.LegType legType,
+            BigDecimal amount, String description) {
+        LedgerEntry entry = new LedgerEntry();
+        entry.setTxId(txId);
+        entry.setAccountId(accountId);
+        entry.setLegType(legType);
+        entry.setAmount(amount);
+        entry.setStatus(LedgerEntry.TransactionStatus.SUCCESS);
+        entry.setDescription(description);
+        return entry;
+    }
+
+    // Nothing a failed attempt did may commit: a hot account's reservation is
+    // only undone when the transaction rolls back, and the HELD transition and
+    // balance update go with it. The rejection cannot be written before then,
+    // as the HELD update holds the status row's lock, so it gets a transaction
+    // of its own once the rollback is done.
+    private void rejectAfterRollback(TransferRequestedEvent event, String errorMessage) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    writeRejection(event, errorMessage);
+                }
+            }
+        });
+    }
+
+    private void writeRejection(TransferRequestedEvent event, String errorMessage) {
         try {
+            WorkerBatch writes = new WorkerBatch();
+
             // Create failed hold entry
             LedgerEntry holdEntry = new LedgerEntry();
             holdEntry.setTxId(event.getTxId());
@@ -121,16 +288,8 @@ public class HoldWorker {
             holdEntry.setAmount(event.getAmount());
             holdEntry.setStatus(LedgerEntry.TransactionStatus.FAILED);
             holdEntry.setDescription("Error during hold: " + errorMessage);
-            ledgerEntryRepository.save(holdEntry);
-            
-            // Update transaction status
-            transactionStatusRepository.findById(event.getTxId())
-                .ifPresent(tx -> {
-                    tx.setStatus(TransactionStatusEntity.Status.REJECTED);
-                    tx.setErrorMessage(errorMessage);
-                    transactionStatusRepository.save(tx);
-                });
-            
+            writes.addLedgerEntry(holdEntry);
+
             // Publish rejection event
             TransferRejectedEvent rejectedEvent = new TransferRejectedEvent();
             rejectedEvent.setTxId(event.getTxId());
@@ -139,33 +298,31 @@ public class HoldWorker {
             rejectedEvent.setAmount(event.getAmount());
             rejectedEvent.setReason(errorMessage);
             rejectedEvent.setTimestamp(System.currentTimeMillis());
-            
-            publishEvent("transfer.rejected", rejectedEvent, event.getSourceAccount());
-            
+
+            writes.addOutboxEvent(outboxEventFactory.create(
+                event.getTxId(), "transfer.rejected", rejectedEvent, event.getSourceAccount()));
+
+            // Update transaction status; a redelivery may have moved it on already
+            boolean rejected = shardRouter.inNewTransaction(event.getSourceAccount(), status -> {
+                if (!transactionStatusRepository.transition(
+                        event.getTxId(), TransactionStatusEntity.Status.REJECTED, errorMessage)) {
+                    return false;
+                }
+                writes.flush(jdbcBatchRepository);
+                return true;
+            });
+            metrics.outcome(STAGE, rejected ? PaymentMetrics.ERROR : PaymentMetrics.DUPLICATE);
+
         } catch (Exception e) {
             log.error("Error handling hold error for txId: {}", event.getTxId(), e);
         }
     }
-    
-    private void publishEvent(String eventType, Object event, String partitionKey) {
-        try {
-            OutboxEvent outboxEvent = new OutboxEvent();
-            outboxEvent.setTxId(getEventTxId(event));
-            outboxEvent.setEventType(eventType);
-            outboxEvent.setPayload(objectMapper.writeValueAsString(event));
-            outboxEvent.setPartitionKey(partitionKey);
-            outboxEventRepository.save(outboxEvent);
-        } catch (Exception e) {
-            log.error("Error publishing event: {}", eventType, e);
-        }
-    }
-    
-    private String getEventTxId(Object event) {
-        if (event instanceof TransferHeldEvent) {
-            return ((TransferHeldEvent) event).getTxId();
-        } else if (event instanceof TransferRejectedEvent) {
-            return ((TransferRejectedEvent) event).getTxId();
+
+    // Thrown out of processHold to roll its transaction back; the rejection has
+    // been queued by then
+    private static final class HoldFailedException extends RuntimeException {
+        private HoldFailedException(Throwable cause) {
+            super(cause);
         }
-        return "unknown";
     }
-}
\ No newline at end of file
+}
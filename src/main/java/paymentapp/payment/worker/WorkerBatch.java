@@ -0,0 +1,36 @@
+package paymentapp.payment.worker;
+
+import paymentapp.payment.entity.LedgerEntry;
+import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.repository.JdbcBatchRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Ledger and outbox rows produced while handling a poll. They are written
+// with one JDBC batch per table just before the worker transaction commits.
+class WorkerBatch {
+    
+    private final List<LedgerEntry> ledgerEntries = new ArrayList<>();
+    private final List<OutboxEvent> outboxEvents = new ArrayList<>();
+    
+    void addLedgerEntry(LedgerEntry entry) {
+        ledgerEntries.add(entry);
+    }
+    
+    void addOutboxEvent(OutboxEvent event) {
+        outboxEvents.add(event);
+    }
+    
+    void append(WorkerBatch other) {
+        ledgerEntries.addAll(other.ledgerEntries);
+        outboxEvents.addAll(other.outboxEvents);
+    }
+    
+    void flush(JdbcBatchRepository jdbcBatchRepository) {
+        jdbcBatchRepository.insertLedgerEntries(ledgerEntries);
+        jdbcBatchRepository.insertOutboxEvents(outboxEvents);
+        ledgerEntries.clear();
+        outboxEvents.clear();
+    }
+}
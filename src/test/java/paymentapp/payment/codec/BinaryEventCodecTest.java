@@ -0,0 +1,191 @@
+package paymentapp.payment.codec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import paymentapp.payment.event.BalanceUpdateEvent;
+import paymentapp.payment.event.TransferCancelledEvent;
+import paymentapp.payment.event.TransferCommittedEvent;
+import paymentapp.payment.event.TransferCreditedEvent;
+import paymentapp.payment.event.TransferHeldEvent;
+import paymentapp.payment.event.TransferRejectedEvent;
+import paymentapp.payment.event.TransferRequestedEvent;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryEventCodecTest {
+
+    // Offset of the amount's kind byte in a TransferHeldEvent whose three strings are null
+    private static final int HELD_AMOUNT_KIND_OFFSET = 5;
+
+    private final BinaryEventCodec codec = new BinaryEventCodec();
+
+    static Stream<Object> populatedEvents() {
+        TransferRequestedEvent requested = new TransferRequestedEvent();
+        requested.setTxId("tx-1");
+        requested.setSourceAccount("ACC001");
+        requested.setDestinationAccount("ACC002");
+        requested.setAmount(new BigDecimal("1000.50"));
+        requested.setDescription("Rent – März");
+        requested.setTimestamp(1_700_000_000_000L);
+
+        TransferHeldEvent held = new TransferHeldEvent();
+        held.setTxId("tx-2");
+        held.setSourceAccount("ACC001");
+        held.setDestinationAccount("ACC002");
+        held.setAmount(new BigDecimal("0.01"));
+        held.setTimestamp(1L);
+
+        TransferCreditedEvent credited = new TransferCreditedEvent();
+        credited.setTxId("tx-3");
+        credited.setSourceAccount("ACC001");
+        credited.setDestinationAccount("ACC002");
+        credited.setAmount(new BigDecimal("250"));
+        credited.setTimestamp(0L);
+
+        TransferCommittedEvent committed = new TransferCommittedEvent();
+        committed.setTxId("tx-4");
+        committed.setSourceAccount("ACC001");
+        committed.setDestinationAccount("ACC002");
+        committed.setAmount(new BigDecimal("99999999.9999"));
+        committed.setTimestamp(Long.MAX_VALUE);
+
+        TransferRejectedEvent rejected = new TransferRejectedEvent();
+        rejected.setTxId("tx-5");
+        rejected.setSourceAccount("ACC001");
+        rejected.setDestinationAccount("ACC002");
+        rejected.setAmount(new BigDecimal("12.30"));
+        rejected.setReason("Insufficient funds");
+        rejected.setTimestamp(-1L);
+
+        TransferCancelledEvent cancelled = new TransferCancelledEvent();
+        cancelled.setTxId("tx-6");
+        cancelled.setSourceAccount("ACC001");
+        cancelled.setDestinationAccount("ACC002");
+        cancelled.setAmount(new BigDecimal("7"));
+        cancelled.setReason("");
+        cancelled.setTimestamp(Long.MIN_VALUE);
+
+        BalanceUpdateEvent balanceUpdate = new BalanceUpdateEvent();
+        balanceUpdate.setAccountId("ACC001");
+        balanceUpdate.setTxId("tx-7");
+        balanceUpdate.setOperation("HOLD_CREATED");
+        balanceUpdate.setAmount(new BigDecimal("-42.00"));
+        balanceUpdate.setTimestamp(1_700_000_000_000L);
+
+        return Stream.of(requested, held, credited, committed, rejected, cancelled, balanceUpdate);
+    }
+
+    static Stream<Object> emptyEvents() {
+        return Stream.of(new TransferRequestedEvent(), new TransferHeldEvent(), new TransferCreditedEvent(),
+            new TransferCommittedEvent(), new TransferRejectedEvent(), new TransferCancelledEvent(),
+            new BalanceUpdateEvent());
+    }
+
+    @ParameterizedTest
+    @MethodSource("populatedEvents")
+    void shouldRoundTripEveryEventType(Object event) {
+        byte[] data = codec.encode(event);
+
+        assertThat(codec.supports(event.getClass())).isTrue();
+        assertThat(codec.accepts(data)).isTrue();
+        assertThat(data[0]).isEqualTo(BinaryEventCodec.VERSION);
+        assertThat(codec.decode(data)).isInstanceOf(event.getClass()).isEqualTo(event);
+    }
+
+    @ParameterizedTest
+    @MethodSource("emptyEvents")
+    void shouldRoundTripNullFields(Object event) {
+        assertThat(codec.decode(codec.encode(event))).isInstanceOf(event.getClass()).isEqualTo(event);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "0", "0.00", "-0.01", "-123456.789", "1E+10", "-1E-30",
+        "9223372036854775807", "-9223372036854775808", "922337203685477580.7"
+    })
+    void shouldKeepValueAndScaleOfDecimalsWithLongUnscaledValue(String amount) {
+        TransferHeldEvent event = heldEvent(new BigDecimal(amount));
+
+        byte[] data = codec.encode(event);
+
+        assertThat(data[HELD_AMOUNT_KIND_OFFSET]).isEqualTo((byte) 1);
+        assertThat(((TransferHeldEvent) codec.decode(data)).getAmount()).isEqualTo(new BigDecimal(amount));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "9223372036854775808", "-9223372036854775809", "92233720368547758.08",
+        "123456789012345678901234567890.123456789", "-123456789012345678901234567890E+40"
+    })
+    void shouldKeepValueAndScaleOfDecimalsBeyondLongRange(String amount) {
+        TransferHeldEvent event = heldEvent(new BigDecimal(amount));
+
+        byte[] data = codec.encode(event);
+
+        assertThat(data[HELD_AMOUNT_KIND_OFFSET]).isEqualTo((byte) 2);
+        assertThat(((TransferHeldEvent) codec.decode(data)).getAmount()).isEqualTo(new BigDecimal(amount));
+    }
+
+    @ParameterizedTest
+    @MethodSource("populatedEvents")
+    void shouldRejectEveryTruncation(Object event) {
+        byte[] data = codec.encode(event);
+
+        for (int length = 0; length < data.length; length++) {
+            byte[] truncated = Arrays.copyOf(data, length);
+            assertThatThrownBy(() -> codec.decode(truncated))
+                .as("decoding %d of %d bytes", length, data.length)
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void shouldRejectTrailingBytes() {
+        byte[] data = codec.encode(heldEvent(BigDecimal.ONE));
+        byte[] padded = Arrays.copyOf(data, data.length + 1);
+
+        assertThatThrownBy(() -> codec.decode(padded))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Trailing bytes");
+    }
+
+    @Test
+    void shouldRejectUnknownTypeTag() {
+        byte[] data = codec.encode(heldEvent(BigDecimal.ONE));
+        data[1] = 8;
+
+        assertThatThrownBy(() -> codec.decode(data))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Unknown event type tag");
+    }
+
+    @Test
+    void shouldRejectTypesWithoutSchema() {
+        assertThat(codec.supports(String.class)).isFalse();
+        assertThatThrownBy(() -> codec.encode("tx-1"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldNotAcceptJsonOrShortInput() {
+        assertThat(codec.accepts(null)).isFalse();
+        assertThat(codec.accepts(new byte[0])).isFalse();
+        assertThat(codec.accepts(new byte[] {BinaryEventCodec.VERSION})).isFalse();
+        assertThat(codec.accepts("{\"txId\":\"tx-1\"}".getBytes())).isFalse();
+        assertThat(codec.accepts(" \n{}".getBytes())).isFalse();
+    }
+
+    private static TransferHeldEvent heldEvent(BigDecimal amount) {
+        TransferHeldEvent event = new TransferHeldEvent();
+        event.setAmount(amount);
+        event.setTimestamp(1L);
+        return event;
+    }
+}
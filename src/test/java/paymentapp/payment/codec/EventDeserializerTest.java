@@ -0,0 +1,112 @@
+package paymentapp.payment.codec;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import paymentapp.payment.event.TransferRequestedEvent;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EventDeserializerTest {
+
+    private static final String TOPIC = "transfer.requested";
+
+    private final EventDeserializer deserializer = new EventDeserializer();
+
+    @BeforeEach
+    void setUp() {
+        // Same settings as spring.kafka.consumer in application.yml
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "paymentapp.payment.event"), false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        deserializer.close();
+    }
+
+    @Test
+    void shouldDecodeBinaryRecord() {
+        TransferRequestedEvent event = requestedEvent();
+        byte[] data = serializer(EventCodecs.BINARY).serialize(TOPIC, new RecordHeaders(), event);
+
+        assertThat(data[0]).isEqualTo(BinaryEventCodec.VERSION);
+        assertThat(deserializer.deserialize(TOPIC, new RecordHeaders(), data)).isEqualTo(event);
+        assertThat(deserializer.deserialize(TOPIC, data)).isEqualTo(event);
+    }
+
+    @Test
+    void shouldDecodeJsonRecord() {
+        TransferRequestedEvent event = requestedEvent();
+        Headers headers = new RecordHeaders();
+        byte[] data = serializer(EventCodecs.JSON).serialize(TOPIC, headers, event);
+
+        assertThat(data[0]).isEqualTo((byte) '{');
+        assertThat(deserializer.deserialize(TOPIC, headers, data)).isEqualTo(event);
+    }
+
+    @Test
+    void shouldDecodeJsonAndBinaryRecordsOnTheSameConsumer() {
+        TransferRequestedEvent event = requestedEvent();
+        Headers jsonHeaders = new RecordHeaders();
+        byte[] json = serializer(EventCodecs.JSON).serialize(TOPIC, jsonHeaders, event);
+        byte[] binary = serializer(EventCodecs.BINARY).serialize(TOPIC, new RecordHeaders(), event);
+
+        assertThat(deserializer.deserialize(TOPIC, new RecordHeaders(), binary)).isEqualTo(event);
+        assertThat(deserializer.deserialize(TOPIC, jsonHeaders, json)).isEqualTo(event);
+        assertThat(deserializer.deserialize(TOPIC, new RecordHeaders(), binary)).isEqualTo(event);
+    }
+
+    @Test
+    void shouldPassPreEncodedPayloadThroughUnchanged() {
+        byte[] payload = new BinaryEventCodec().encode(requestedEvent());
+
+        assertThat(serializer(EventCodecs.JSON).serialize(TOPIC, new RecordHeaders(), payload)).isSameAs(payload);
+        assertThat(serializer(EventCodecs.BINARY).serialize(TOPIC, payload)).isSameAs(payload);
+    }
+
+    @Test
+    void shouldFailOnTruncatedBinaryRecord() {
+        byte[] data = new BinaryEventCodec().encode(requestedEvent());
+        byte[] truncated = Arrays.copyOf(data, data.length - 1);
+
+        assertThatThrownBy(() -> deserializer.deserialize(TOPIC, new RecordHeaders(), truncated))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Truncated");
+    }
+
+    @Test
+    void shouldNotTreatJsonWithLeadingWhitespaceAsBinary() {
+        TransferRequestedEvent event = requestedEvent();
+        Headers headers = new RecordHeaders();
+        byte[] json = serializer(EventCodecs.JSON).serialize(TOPIC, headers, event);
+        byte[] padded = ("\n " + new String(json, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+
+        assertThat(deserializer.deserialize(TOPIC, headers, padded)).isEqualTo(event);
+    }
+
+    private static EventSerializer serializer(String codec) {
+        EventSerializer serializer = new EventSerializer();
+        serializer.configure(Map.of(EventSerializer.CODEC_CONFIG, codec), false);
+        return serializer;
+    }
+
+    private static TransferRequestedEvent requestedEvent() {
+        TransferRequestedEvent event = new TransferRequestedEvent();
+        event.setTxId("tx-1");
+        event.setSourceAccount("ACC001");
+        event.setDestinationAccount("ACC002");
+        event.setAmount(new BigDecimal("1000.50"));
+        event.setDescription("Test transfer");
+        event.setTimestamp(1_700_000_000_000L);
+        return event;
+    }
+}
@@ -0,0 +1,58 @@
+package paymentapp.payment.entity;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import paymentapp.payment.entity.TransactionStatusEntity.Status;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static paymentapp.payment.entity.TransactionStatusEntity.Status.CANCELLED;
+import static paymentapp.payment.entity.TransactionStatusEntity.Status.COMMITTED;
+import static paymentapp.payment.entity.TransactionStatusEntity.Status.CREDITED;
+import static paymentapp.payment.entity.TransactionStatusEntity.Status.HELD;
+import static paymentapp.payment.entity.TransactionStatusEntity.Status.REJECTED;
+import static paymentapp.payment.entity.TransactionStatusEntity.Status.REQUESTED;
+
+class TransactionStatusEntityTest {
+
+    // The saga's transitions: hold, credit, commit, with COMMITTED straight
+    // from HELD for a fused transfer, REJECTED from any step up to the credit,
+    // and CANCELLED only for a hold the reconciler times out
+    private static final Map<Status, Set<Status>> PREDECESSORS = Map.of(
+        REQUESTED, Set.of(),
+        HELD, Set.of(REQUESTED),
+        CREDITED, Set.of(HELD),
+        COMMITTED, Set.of(HELD, CREDITED),
+        REJECTED, Set.of(REQUESTED, HELD, CREDITED),
+        CANCELLED, Set.of(HELD));
+
+    @Test
+    void shouldCoverEveryStatus() {
+        assertThat(PREDECESSORS.keySet()).containsExactlyInAnyOrder(Status.values());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Status.class)
+    void shouldAllowExactlyTheSagaTransitionsInto(Status status) {
+        assertThat(status.predecessors()).isEqualTo(PREDECESSORS.get(status));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Status.class)
+    void shouldNotAllowATransitionToTheSameStatus(Status status) {
+        assertThat(status.predecessors()).doesNotContain(status);
+    }
+
+    @Test
+    void shouldNotLeaveATerminalStatus() {
+        Set<Status> terminal = EnumSet.of(COMMITTED, REJECTED, CANCELLED);
+
+        assertThat(Arrays.stream(Status.values()).flatMap(status -> status.predecessors().stream()))
+            .doesNotContainAnyElementsOf(terminal);
+    }
+}
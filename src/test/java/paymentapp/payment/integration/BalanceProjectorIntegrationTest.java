@@ -0,0 +1,172 @@
+package paymentapp.payment.integration;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+import paymentapp.payment.event.BalanceUpdateEvent;
+import paymentapp.payment.worker.BalanceProjector;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Polls are handed to the projector directly, with offsets chosen by each test
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+@Testcontainers
+class BalanceProjectorIntegrationTest {
+
+    private static final String HOLD_CREATED = "ledger.hold_created";
+    private static final String HOLD_RELEASED = "ledger.hold_released";
+    private static final String CREDIT_POSTED = "ledger.credit_posted";
+    private static final String DEBIT_POSTED = "ledger.debit_posted";
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("payment_db")
+            .withUsername("payment_user")
+            .withPassword("payment_pass")
+            .withCopyFileToContainer(MountableFile.forHostPath("init.sql"), "/docker-entrypoint-initdb.d/init.sql");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    private BalanceProjector balanceProjector;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldSkipRecordsAtOrBelowWatermark() {
+        String account = createAccount();
+        jdbcTemplate.update("INSERT INTO projection_checkpoints (account_id, topic, partition_id, applied_offset) " +
+                "VALUES (?, ?, 0, 5)", account, CREDIT_POSTED);
+
+        balanceProjector.handleBalanceUpdates(List.of(
+            record(CREDIT_POSTED, 4, creditedLeg(account)),
+            record(CREDIT_POSTED, 5, creditedLeg(account)),
+            record(CREDIT_POSTED, 6, creditedLeg(account))));
+
+        assertThat(balance(account, "book")).isEqualByComparingTo("1100.00");
+        assertThat(appliedOffset(account, CREDIT_POSTED)).isEqualTo(6);
+    }
+
+    @Test
+    void shouldApplyRecordRedeliveredInTheSamePollOnce() {
+        String account = createAccount();
+        BalanceUpdateEvent event = creditedLeg(account);
+
+        balanceProjector.handleBalanceUpdates(List.of(
+            record(CREDIT_POSTED, 3, event),
+            record(CREDIT_POSTED, 3, event)));
+
+        assertThat(balance(account, "book")).isEqualByComparingTo("1100.00");
+        assertThat(appliedOffset(account, CREDIT_POSTED)).isEqualTo(3);
+    }
+
+    @Test
+    void shouldNotApplyRecordAgainInALaterPoll() {
+        String account = createAccount();
+        ConsumerRecord<String, BalanceUpdateEvent> record = record(CREDIT_POSTED, 0, creditedLeg(account));
+
+        balanceProjector.handleBalanceUpdates(List.of(record));
+        balanceProjector.handleBalanceUpdates(List.of(record));
+
+        assertThat(balance(account, "book")).isEqualByComparingTo("1100.00");
+    }
+
+    @Test
+    void shouldSkipHoldBeyondAvailableAndApplyTheRest() {
+        String account = createAccount();
+
+        balanceProjector.handleBalanceUpdates(List.of(
+            record(HOLD_CREATED, 0, event(account, "HOLD", new BigDecimal("1500.00"))),
+            record(HOLD_CREATED, 1, event(account, "HOLD", AMOUNT))));
+
+        assertThat(balance(account, "available")).isEqualByComparingTo("900.00");
+        assertThat(balance(account, "open_hold")).isEqualByComparingTo("100.00");
+        assertThat(appliedOffset(account, HOLD_CREATED)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldSkipReleaseBeyondOpenHold() {
+        String account = createAccount();
+        jdbcTemplate.update("UPDATE balances SET available = 950.00, open_hold = 50.00 WHERE account_id = ?", account);
+
+        balanceProjector.handleBalanceUpdates(List.of(
+            record(HOLD_RELEASED, 0, event(account, "RELEASE", AMOUNT))));
+
+        assertThat(balance(account, "open_hold")).isEqualByComparingTo("50.00");
+        // Skipped, not retried: the watermark still moves past it
+        assertThat(appliedOffset(account, HOLD_RELEASED)).isEqualTo(0);
+    }
+
+    @Test
+    void shouldSkipDebitBeyondBook() {
+        String account = createAccount();
+
+        balanceProjector.handleBalanceUpdates(List.of(
+            record(DEBIT_POSTED, 0, event(account, "DEBIT", new BigDecimal("1000.01")))));
+
+        assertThat(balance(account, "book")).isEqualByComparingTo("1000.00");
+        assertThat(appliedOffset(account, DEBIT_POSTED)).isEqualTo(0);
+    }
+
+    private String createAccount() {
+        String accountId = "P" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        jdbcTemplate.update("INSERT INTO account_mst (account_id, account_name, account_type) VALUES (?, ?, 'CHECKING')",
+                accountId, accountId);
+        jdbcTemplate.update("INSERT INTO balances (account_id, book, available, open_hold) VALUES (?, 1000.00, 1000.00, 0.00)",
+                accountId);
+        return accountId;
+    }
+
+    private BalanceUpdateEvent creditedLeg(String accountId) {
+        return event(accountId, "CREDIT", AMOUNT);
+    }
+
+    // The projector only applies events whose ledger leg has been written
+    private BalanceUpdateEvent event(String accountId, String legType, BigDecimal amount) {
+        String txId = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO ledger_entries (tx_id, account_id, leg_type, amount, status) " +
+                "VALUES (?, ?, ?, ?, 'SUCCESS')", txId, accountId, legType, amount);
+
+        BalanceUpdateEvent event = new BalanceUpdateEvent();
+        event.setAccountId(accountId);
+        event.setTxId(txId);
+        event.setAmount(amount);
+        event.setTimestamp(System.currentTimeMillis());
+        return event;
+    }
+
+    private static ConsumerRecord<String, BalanceUpdateEvent> record(String topic, long offset, BalanceUpdateEvent event) {
+        return new ConsumerRecord<>(topic, 0, offset, event.getAccountId(), event);
+    }
+
+    private BigDecimal balance(String accountId, String column) {
+        return jdbcTemplate.queryForObject("SELECT " + column + " FROM balances WHERE account_id = ?",
+                BigDecimal.class, accountId);
+    }
+
+    private long appliedOffset(String accountId, String topic) {
+        return jdbcTemplate.queryForObject("SELECT applied_offset FROM projection_checkpoints " +
+                "WHERE account_id = ? AND topic = ? AND partition_id = 0", Long.class, accountId, topic);
+    }
+}
@@ -0,0 +1,125 @@
+package paymentapp.payment.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import org.testcontainers.utility.MountableFile;
+import paymentapp.payment.entity.OutboxEvent;
+import paymentapp.payment.event.TransferRequestedEvent;
+import paymentapp.payment.repository.OutboxEventRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+@SpringBootTest(properties = "payment.outbox.relay-mode=cdc")
+@Testcontainers
+class DebeziumOutboxPublisherIntegrationTest {
+
+    // The stock mysql:8.0 image runs with the ROW binlog that Debezium needs
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("payment_db")
+            .withUsername("payment_user")
+            .withPassword("payment_pass")
+            .withCopyFileToContainer(MountableFile.forHostPath("init.sql"),
+                    "/docker-entrypoint-initdb.d/init.sql");
+
+    @Container
+    static KafkaContainer kafka = new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.4.0"));
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("spring.kafka.bootstrap-servers", kafka::getBootstrapServers);
+        registry.add("payment.debezium.hostname", mysql::getHost);
+        registry.add("payment.debezium.port", () -> mysql.getMappedPort(MySQLContainer.MYSQL_PORT));
+        registry.add("payment.debezium.username", mysql::getUsername);
+        registry.add("payment.debezium.password", mysql::getPassword);
+        registry.add("payment.debezium.offset-storage", () -> tempFile("offsets"));
+        registry.add("payment.debezium.database-history", () -> tempFile("history"));
+    }
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void shouldForwardInsertedOutboxRowKeyedByPartitionKey() throws Exception {
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(Map.<String, Object>of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBootstrapServers(),
+                ConsumerConfig.GROUP_ID_CONFIG, "debezium-outbox-test",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"),
+                new StringDeserializer(), new StringDeserializer())) {
+            consumer.subscribe(List.of("transfer.requested"));
+
+            String txId = UUID.randomUUID().toString();
+            TransferRequestedEvent event = new TransferRequestedEvent();
+            event.setTxId(txId);
+            event.setSourceAccount("ACC001");
+            event.setDestinationAccount("ACC002");
+            event.setAmount(new BigDecimal("10.00"));
+            event.setTimestamp(System.currentTimeMillis());
+
+            OutboxEvent outboxEvent = new OutboxEvent();
+            outboxEvent.setTxId(txId);
+            outboxEvent.setEventType("transfer.requested");
+            outboxEvent.setPayload(objectMapper.writeValueAsString(event));
+            outboxEvent.setPartitionKey("ACC001");
+            OutboxEvent saved = outboxEventRepository.save(outboxEvent);
+
+            ConsumerRecord<String, String> forwarded = pollForTxId(consumer, txId, Duration.ofSeconds(90));
+
+            assertThat(forwarded).isNotNull();
+            assertThat(forwarded.key()).isEqualTo("ACC001");
+            await().atMost(Duration.ofSeconds(30)).untilAsserted(() ->
+                    assertThat(outboxEventRepository.findById(saved.getId()))
+                            .hasValueSatisfying(row -> assertThat(row.getProcessed()).isTrue()));
+        }
+    }
+
+    private static ConsumerRecord<String, String> pollForTxId(KafkaConsumer<String, String> consumer,
+            String txId, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(500))) {
+                if (record.value() != null && record.value().contains(txId)) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String tempFile(String name) {
+        try {
+            return Files.createTempDirectory("debezium-").resolve(name).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
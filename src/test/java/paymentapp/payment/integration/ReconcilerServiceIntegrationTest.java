@@ -0,0 +1,164 @@
+package paymentapp.payment.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+import paymentapp.payment.service.ReconcilerService;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The scheduled scan is pushed out of the way; each test runs it once by hand
+@SpringBootTest(properties = {
+        "payment.reconciler.mode=scan",
+        "payment.reconciler.schedule-interval=3600000"
+})
+@EmbeddedKafka(partitions = 1, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+@Testcontainers
+class ReconcilerServiceIntegrationTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("payment_db")
+            .withUsername("payment_user")
+            .withPassword("payment_pass")
+            .withCopyFileToContainer(MountableFile.forHostPath("init.sql"), "/docker-entrypoint-initdb.d/init.sql");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    private ReconcilerService reconcilerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldReleaseHoldOfTransferRejectedByFailedCommit() {
+        String source = createAccount();
+        String destination = createAccount();
+        String txId = UUID.randomUUID().toString();
+        // What CommitWorker.handleCommitError leaves behind: a FAILED DEBIT leg, status REJECTED
+        insertTransfer(txId, source, destination, "REJECTED");
+        insertHold(txId, source);
+        insertLeg(txId, destination, "CREDIT", "SUCCESS");
+        insertLeg(txId, source, "DEBIT", "FAILED");
+
+        reconcilerService.reconcileOrphanedHolds();
+
+        assertThat(legCount(txId, source, "RELEASE")).isEqualTo(1);
+        assertThat(openHold(source)).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(status(txId)).isEqualTo("REJECTED");
+        assertThat(outboxCount(txId, "transfer.cancelled")).isZero();
+    }
+
+    @Test
+    void shouldCancelAndReleaseHoldOfTransferStillHeld() {
+        String source = createAccount();
+        String txId = UUID.randomUUID().toString();
+        insertTransfer(txId, source, createAccount(), "HELD");
+        insertHold(txId, source);
+
+        reconcilerService.reconcileOrphanedHolds();
+
+        assertThat(legCount(txId, source, "RELEASE")).isEqualTo(1);
+        assertThat(openHold(source)).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(status(txId)).isEqualTo("CANCELLED");
+        assertThat(outboxCount(txId, "transfer.cancelled")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLeaveHoldOfCreditedTransferToCommitWorker() {
+        String source = createAccount();
+        String destination = createAccount();
+        String txId = UUID.randomUUID().toString();
+        insertTransfer(txId, source, destination, "CREDITED");
+        insertHold(txId, source);
+        insertLeg(txId, destination, "CREDIT", "SUCCESS");
+
+        reconcilerService.reconcileOrphanedHolds();
+
+        assertThat(legCount(txId, source, "RELEASE")).isZero();
+        assertThat(openHold(source)).isEqualByComparingTo(AMOUNT);
+        assertThat(status(txId)).isEqualTo("CREDITED");
+    }
+
+    @Test
+    void shouldNotReleaseHoldOfCommittedTransfer() {
+        String source = createAccount();
+        String destination = createAccount();
+        String txId = UUID.randomUUID().toString();
+        insertTransfer(txId, source, destination, "COMMITTED");
+        insertHold(txId, source);
+        insertLeg(txId, destination, "CREDIT", "SUCCESS");
+        insertLeg(txId, source, "DEBIT", "SUCCESS");
+
+        reconcilerService.reconcileOrphanedHolds();
+
+        assertThat(legCount(txId, source, "RELEASE")).isZero();
+        assertThat(openHold(source)).isEqualByComparingTo(AMOUNT);
+        assertThat(status(txId)).isEqualTo("COMMITTED");
+    }
+
+    private String createAccount() {
+        String accountId = "R" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        jdbcTemplate.update("INSERT INTO account_mst (account_id, account_name, account_type) VALUES (?, ?, 'CHECKING')",
+                accountId, accountId);
+        jdbcTemplate.update("INSERT INTO balances (account_id, book, available, open_hold) VALUES (?, 1000.00, 1000.00, 0.00)",
+                accountId);
+        return accountId;
+    }
+
+    private void insertTransfer(String txId, String source, String destination, String status) {
+        jdbcTemplate.update("INSERT INTO transaction_status (tx_id, source_account, destination_account, amount, status) " +
+                "VALUES (?, ?, ?, ?, ?)", txId, source, destination, AMOUNT, status);
+    }
+
+    // A hold placed well before the timeout, with its effect on the balance
+    private void insertHold(String txId, String accountId) {
+        jdbcTemplate.update("INSERT INTO ledger_entries (tx_id, account_id, leg_type, amount, status, created_at) " +
+                "VALUES (?, ?, 'HOLD', ?, 'SUCCESS', ?)", txId, accountId, AMOUNT, LocalDateTime.now().minusMinutes(30));
+        jdbcTemplate.update("UPDATE balances SET available = available - ?, open_hold = open_hold + ? WHERE account_id = ?",
+                AMOUNT, AMOUNT, accountId);
+    }
+
+    private void insertLeg(String txId, String accountId, String legType, String status) {
+        jdbcTemplate.update("INSERT INTO ledger_entries (tx_id, account_id, leg_type, amount, status) VALUES (?, ?, ?, ?, ?)",
+                txId, accountId, legType, AMOUNT, status);
+    }
+
+    private int legCount(String txId, String accountId, String legType) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ledger_entries WHERE tx_id = ? AND account_id = ? " +
+                "AND leg_type = ?", Integer.class, txId, accountId, legType);
+    }
+
+    private BigDecimal openHold(String accountId) {
+        return jdbcTemplate.queryForObject("SELECT open_hold FROM balances WHERE account_id = ?", BigDecimal.class, accountId);
+    }
+
+    private String status(String txId) {
+        return jdbcTemplate.queryForObject("SELECT status FROM transaction_status WHERE tx_id = ?", String.class, txId);
+    }
+
+    private int outboxCount(String txId, String eventType) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox WHERE tx_id = ? AND event_type = ?",
+                Integer.class, txId, eventType);
+    }
+}
@@ -0,0 +1,144 @@
+package paymentapp.payment.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+import paymentapp.payment.entity.TransactionStatusEntity.Status;
+import paymentapp.payment.repository.TransactionStatusRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@EmbeddedKafka(partitions = 1, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+@Testcontainers
+class TransactionStatusRepositoryIntegrationTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("payment_db")
+            .withUsername("payment_user")
+            .withPassword("payment_pass")
+            .withCopyFileToContainer(MountableFile.forHostPath("init.sql"), "/docker-entrypoint-initdb.d/init.sql");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    private TransactionStatusRepository transactionStatusRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldMoveTransferAlongTheSaga() {
+        String txId = insertTransfer("HELD", null);
+
+        assertThat(transition(txId, Status.CREDITED, null)).isTrue();
+        assertThat(transition(txId, Status.COMMITTED, null)).isTrue();
+
+        assertThat(row(txId)).containsEntry("status", "COMMITTED");
+    }
+
+    @Test
+    void shouldNotApplyCreditedAfterCommittedAndLeaveRowUnchanged() {
+        String txId = insertTransfer("COMMITTED", null);
+
+        assertThat(transition(txId, Status.CREDITED, "late credit")).isFalse();
+        assertThat(inTransaction(() -> transactionStatusRepository.updateStatusFrom(
+            txId, "CREDITED", "late credit", List.of("HELD")))).isZero();
+
+        Map<String, Object> row = row(txId);
+        assertThat(row).containsEntry("status", "COMMITTED");
+        assertThat(row.get("error_message")).isNull();
+        assertThat(updatedAt(txId)).isEqualTo(UPDATED_AT);
+    }
+
+    @Test
+    void shouldNotRejectCancelledTransferOrOverwriteItsMessage() {
+        String txId = insertTransfer("CANCELLED", "Hold timed out");
+
+        assertThat(transition(txId, Status.REJECTED, "Insufficient funds")).isFalse();
+
+        Map<String, Object> row = row(txId);
+        assertThat(row).containsEntry("status", "CANCELLED");
+        assertThat(row).containsEntry("error_message", "Hold timed out");
+        assertThat(updatedAt(txId)).isEqualTo(UPDATED_AT);
+    }
+
+    @Test
+    void shouldNotRepeatATransition() {
+        String txId = insertTransfer("REQUESTED", null);
+
+        assertThat(transition(txId, Status.HELD, null)).isTrue();
+        assertThat(transition(txId, Status.HELD, null)).isFalse();
+    }
+
+    @Test
+    void shouldNotTransitionToRequested() {
+        String txId = insertTransfer("HELD", null);
+
+        assertThatThrownBy(() -> transition(txId, Status.REQUESTED, null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private boolean transition(String txId, Status status, String errorMessage) {
+        return inTransaction(() -> transactionStatusRepository.transition(txId, status, errorMessage));
+    }
+
+    private <T> T inTransaction(Supplier<T> action) {
+        return new TransactionTemplate(transactionManager).execute(status -> action.get());
+    }
+
+    private String insertTransfer(String status, String errorMessage) {
+        String source = createAccount();
+        String destination = createAccount();
+        String txId = UUID.randomUUID().toString();
+        jdbcTemplate.update("INSERT INTO transaction_status (tx_id, source_account, destination_account, amount, status, " +
+                "error_message, updated_at) VALUES (?, ?, ?, 100.00, ?, ?, ?)",
+                txId, source, destination, status, errorMessage, UPDATED_AT);
+        return txId;
+    }
+
+    private String createAccount() {
+        String accountId = "T" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        jdbcTemplate.update("INSERT INTO account_mst (account_id, account_name, account_type) VALUES (?, ?, 'CHECKING')",
+                accountId, accountId);
+        return accountId;
+    }
+
+    private Map<String, Object> row(String txId) {
+        return jdbcTemplate.queryForMap("SELECT status, error_message FROM transaction_status WHERE tx_id = ?",
+                txId);
+    }
+
+    private LocalDateTime updatedAt(String txId) {
+        return jdbcTemplate.queryForObject("SELECT updated_at FROM transaction_status WHERE tx_id = ?",
+                LocalDateTime.class, txId);
+    }
+}
@@ -0,0 +1,54 @@
+package paymentapp.payment.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Picks account indexes 0..n-1, either uniformly or Zipfian, where index 0 is
+// the hottest account and index k is drawn with weight 1/(k+1)^exponent
+abstract class AccountDistribution {
+
+    abstract int next(Random random);
+
+    static AccountDistribution of(String name, int accounts, double zipfExponent) {
+        return switch (name) {
+            case "uniform" -> new Uniform(accounts);
+            case "zipf" -> new Zipf(accounts, zipfExponent);
+            default -> throw new IllegalArgumentException("Unknown account distribution: " + name);
+        };
+    }
+
+    private static final class Uniform extends AccountDistribution {
+        private final int accounts;
+        
+        private Uniform(int accounts) {
+            this.accounts = accounts;
+        }
+        
+        @Override
+        int next(Random random) {
+            return random.nextInt(accounts);
+        }
+    }
+
+    private static final class Zipf extends AccountDistribution {
+        private final double[] cumulative;
+        
+        private Zipf(int accounts, double exponent) {
+            cumulative = new double[accounts];
+            double total = 0;
+            for (int k = 0; k < accounts; k++) {
+                total += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = total;
+            }
+            for (int k = 0; k < accounts; k++) {
+                cumulative[k] /= total;
+            }
+        }
+        
+        @Override
+        int next(Random random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package paymentapp.payment.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+import paymentapp.payment.codec.EventDeserializer;
+import paymentapp.payment.dto.TransferRequest;
+import paymentapp.payment.dto.TransferResponse;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives transfers through POST /payments/transfer and the HOLD -> CREDIT ->
+// COMMIT saga, against embedded Kafka and a MySQL container, and reports
+// latency percentiles per stage. Excluded from the normal build; run with
+//   mvn -Pload-test test -Dload.transfers=20000 -Dload.distribution=zipf
+// Stage latencies are measured from the moment the client sent the request to
+// the timestamp carried on the transfer.held / transfer.committed event.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EmbeddedKafka(partitions = 3, bootstrapServersProperty = "spring.kafka.bootstrap-servers")
+@Testcontainers
+@Tag("load")
+@Slf4j
+class TransferLoadTest {
+
+    private static final long MAX_LATENCY_MS = Duration.ofMinutes(10).toMillis();
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("payment_db")
+            .withUsername("payment_user")
+            .withPassword("payment_pass")
+            .withCopyFileToContainer(MountableFile.forHostPath("init.sql"), "/docker-entrypoint-initdb.d/init.sql");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    @Value("${load.transfers:2000}")
+    private int transfers;
+
+    @Value("${load.concurrency:16}")
+    private int concurrency;
+
+    @Value("${load.accounts:1000}")
+    private int accounts;
+
+    // uniform | zipf
+    @Value("${load.distribution:uniform}")
+    private String distribution;
+
+    @Value("${load.zipf-exponent:1.1}")
+    private double zipfExponent;
+
+    @Value("${load.timeout-seconds:300}")
+    private long timeoutSeconds;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${payment.worker.batch-mode:false}")
+    private boolean workerBatchMode;
+
+    @Test
+    void sustainedTransfers() throws Exception {
+        seedAccounts();
+        AccountDistribution accountDistribution = AccountDistribution.of(distribution, accounts, zipfExponent);
+
+        Map<String, Long> sentAt = new ConcurrentHashMap<>();
+        Map<String, Long> heldAt = new ConcurrentHashMap<>();
+        Map<String, Long> committedAt = new ConcurrentHashMap<>();
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+        Histogram ingress = new ConcurrentHistogram(MAX_LATENCY_MS, 3);
+        AtomicInteger refused = new AtomicInteger();
+
+        try (KafkaConsumer<String, Object> consumer = stageConsumer()) {
+            // Partitions must be assigned before the first transfer goes out
+            while (consumer.assignment().isEmpty()) {
+                consumer.poll(Duration.ofMillis(100));
+            }
+
+            long startMs = System.currentTimeMillis();
+            AtomicInteger remaining = new AtomicInteger(transfers);
+            ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                clients.submit(() -> {
+                    Random random = new Random();
+                    while (remaining.getAndDecrement() > 0) {
+                        long sendMs = System.currentTimeMillis();
+                        ResponseEntity<TransferResponse> response = restTemplate.postForEntity(
+                            "/payments/transfer", transferRequest(accountDistribution, random), TransferResponse.class);
+                        ingress.recordValue(Math.min(System.currentTimeMillis() - sendMs, MAX_LATENCY_MS));
+                        if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                            sentAt.put(response.getBody().getTxId(), sendMs);
+                        } else {
+                            refused.incrementAndGet();
+                        }
+                    }
+                });
+            }
+            clients.shutdown();
+
+            long deadlineMs = startMs + Duration.ofSeconds(timeoutSeconds).toMillis();
+            long lastCommitMs = startMs;
+            while (System.currentTimeMillis() < deadlineMs) {
+                for (ConsumerRecord<String, Object> record : consumer.poll(Duration.ofMillis(200))) {
+                    JsonNode event = objectMapper.valueToTree(record.value());
+                    String txId = event.get("txId").asText();
+                    long timestampMs = event.get("timestamp").asLong();
+                    switch (record.topic()) {
+                        case "transfer.held" -> heldAt.put(txId, timestampMs);
+                        case "transfer.committed" -> {
+                            committedAt.put(txId, timestampMs);
+                            lastCommitMs = Math.max(lastCommitMs, timestampMs);
+                        }
+                        default -> failed.add(txId);
+                    }
+                }
+                if (clients.isTerminated() && sentAt.keySet().stream()
+                        .allMatch(txId -> committedAt.containsKey(txId) || failed.contains(txId))) {
+                    break;
+                }
+            }
+
+            String report = report(startMs, lastCommitMs, sentAt, heldAt, committedAt, failed, ingress, refused.get());
+            log.info("\n{}", report);
+            Files.writeString(Path.of("target", "load-report.txt"), report);
+        }
+
+        assertThat(committedAt).isNotEmpty();
+    }
+
+    private void seedAccounts() {
+        List<Object[]> ids = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            ids.add(new Object[] {accountId(i)});
+        }
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO account_mst (account_id, account_name, account_type, status) " +
+            "VALUES (?, 'Load test', 'CHECKING', 'ACTIVE')", ids);
+        jdbcTemplate.batchUpdate("INSERT IGNORE INTO balances (account_id, book, available, open_hold) " +
+            "VALUES (?, 1000000000.00, 1000000000.00, 0.00)", ids);
+    }
+
+    private TransferRequest transferRequest(AccountDistribution accountDistribution, Random random) {
+        int source = accountDistribution.next(random);
+        int destination = accountDistribution.next(random);
+        while (destination == source) {
+            destination = random.nextInt(accounts);
+        }
+        TransferRequest request = new TransferRequest();
+        request.setSourceAccount(accountId(source));
+        request.setDestinationAccount(accountId(destination));
+        request.setAmount(new BigDecimal("1.00"));
+        request.setDescription("Load test transfer");
+        request.setIdempotencyKey(UUID.randomUUID().toString());
+        return request;
+    }
+
+    private KafkaConsumer<String, Object> stageConsumer() {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        properties.put(ConsumerConfig.GROUP_ID_CONFIG, "load-report-" + UUID.randomUUID());
+        properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        // Reads whichever codec the application under test produces
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, EventDeserializer.class);
+        properties.put(JsonDeserializer.TRUSTED_PACKAGES, "paymentapp.payment.event");
+        KafkaConsumer<String, Object> consumer = new KafkaConsumer<>(properties);
+        consumer.subscribe(List.of("transfer.held", "transfer.committed", "transfer.rejected", "transfer.cancelled"));
+        return consumer;
+    }
+
+    private String report(long startMs, long lastCommitMs, Map<String, Long> sentAt, Map<String, Long> heldAt,
+            Map<String, Long> committedAt, Set<String> failed, Histogram ingress, int refused) {
+        Histogram toHeld = new Histogram(MAX_LATENCY_MS, 3);
+        Histogram toCommitted = new Histogram(MAX_LATENCY_MS, 3);
+        int committed = 0;
+        int rejected = 0;
+        for (Map.Entry<String, Long> sent : sentAt.entrySet()) {
+            Long held = heldAt.get(sent.getKey());
+            if (held != null) {
+                toHeld.recordValue(Math.max(0, Math.min(held - sent.getValue(), MAX_LATENCY_MS)));
+            }
+            Long commit = committedAt.get(sent.getKey());
+            if (commit != null) {
+                toCommitted.recordValue(Math.max(0, Math.min(commit - sent.getValue(), MAX_LATENCY_MS)));
+                committed++;
+            } else if (failed.contains(sent.getKey())) {
+                rejected++;
+            }
+        }
+        double seconds = Math.max(1, lastCommitMs - startMs) / 1000.0;
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Transfer load: %d requested, %d accounts (%s), concurrency %d%n",
+            transfers, accounts, distribution, concurrency));
+        report.append(String.format("Outcome: %d accepted, %d refused, %d committed, %d rejected/cancelled, %d unfinished%n",
+            sentAt.size(), refused, committed, rejected, sentAt.size() - committed - rejected));
+        report.append(String.format("Throughput: %.1f committed transfers/s over %.1f s%n", committed / seconds, seconds));
+        report.append(String.format("Threads: %s, workers: %s, max in-flight transfers: %d%n",
+            virtualThreads ? "virtual" : "platform", workerBatchMode ? "batch" : "per-record",
+            maxInFlight(sentAt, committedAt)));
+        report.append(String.format("%-20s %8s %8s %8s %8s %8s%n", "stage (ms)", "count", "p50", "p99", "p999", "max"));
+        appendStage(report, "ingress", ingress);
+        appendStage(report, "time-to-HELD", toHeld);
+        appendStage(report, "time-to-COMMITTED", toCommitted);
+        return report.toString();
+    }
+
+    // Most transfers accepted but not yet committed at any one time
+    private static int maxInFlight(Map<String, Long> sentAt, Map<String, Long> committedAt) {
+        List<long[]> changes = new ArrayList<>();
+        committedAt.forEach((txId, commitMs) -> {
+            Long sendMs = sentAt.get(txId);
+            if (sendMs != null) {
+                changes.add(new long[] {sendMs, 1});
+                changes.add(new long[] {commitMs, -1});
+            }
+        });
+        changes.sort(Comparator.<long[]>comparingLong(change -> change[0]).thenComparingLong(change -> change[1]));
+
+        int inFlight = 0;
+        int max = 0;
+        for (long[] change : changes) {
+            inFlight += (int) change[1];
+            max = Math.max(max, inFlight);
+        }
+        return max;
+    }
+
+    private static void appendStage(StringBuilder report, String stage, Histogram histogram) {
+        report.append(String.format("%-20s %8d %8d %8d %8d %8d%n", stage, histogram.getTotalCount(),
+            histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+            histogram.getValueAtPercentile(99.9), histogram.getMaxValue()));
+    }
+
+    private static String accountId(int index) {
+        return String.format("LOAD%05d", index);
+    }
+}
@@ -0,0 +1,102 @@
+package paymentapp.payment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimerWheelTest {
+
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 8;
+
+    @Test
+    void shouldExpireTimerOnItsDeadlineTick() {
+        HierarchicalTimerWheel<String, String> wheel = new HierarchicalTimerWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        wheel.schedule("tx-1", "tx-1", 50);
+
+        assertThat(wheel.advanceTo(40)).isEmpty();
+        assertThat(wheel.advanceTo(50)).containsExactly("tx-1");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void shouldRoundDeadlineUpToNextTick() {
+        HierarchicalTimerWheel<String, String> wheel = new HierarchicalTimerWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        wheel.schedule("tx-1", "tx-1", 41);
+
+        assertThat(wheel.advanceTo(49)).isEmpty();
+        assertThat(wheel.advanceTo(50)).containsExactly("tx-1");
+    }
+
+    @Test
+    void shouldCascadeTimersDownEveryLevel() {
+        // Level n buckets span WHEEL_SIZE^n ticks; these deadlines land on levels 1, 2 and 3
+        long[] deadlineTicks = {WHEEL_SIZE + 3, WHEEL_SIZE * WHEEL_SIZE + 5, WHEEL_SIZE * WHEEL_SIZE * WHEEL_SIZE + 7};
+        HierarchicalTimerWheel<String, Long> wheel = new HierarchicalTimerWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        for (long tick : deadlineTicks) {
+            wheel.schedule("tx-" + tick, tick, tick * TICK_MS);
+        }
+
+        for (long tick : deadlineTicks) {
+            assertThat(wheel.advanceTo((tick - 1) * TICK_MS)).isEmpty();
+            assertThat(wheel.advanceTo(tick * TICK_MS)).containsExactly(tick);
+        }
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void shouldExpireEveryTimerExactlyOnceAtItsTick() {
+        HierarchicalTimerWheel<String, Long> wheel = new HierarchicalTimerWheel<>(TICK_MS, WHEEL_SIZE, 35);
+        long startTick = 3;
+        int span = WHEEL_SIZE * WHEEL_SIZE * WHEEL_SIZE * 2;
+        for (long tick = startTick + 1; tick <= startTick + span; tick++) {
+            wheel.schedule("tx-" + tick, tick, tick * TICK_MS);
+        }
+
+        List<Long> expired = new ArrayList<>();
+        for (long tick = startTick + 1; tick <= startTick + span; tick++) {
+            List<Long> due = wheel.advanceTo(tick * TICK_MS);
+            assertThat(due).containsExactly(tick);
+            expired.addAll(due);
+        }
+        assertThat(expired).hasSize(span);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void shouldNotExpireCancelledTimer() {
+        HierarchicalTimerWheel<String, String> wheel = new HierarchicalTimerWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        wheel.schedule("tx-1", "tx-1", 50);
+        wheel.schedule("tx-2", "tx-2", WHEEL_SIZE * WHEEL_SIZE * TICK_MS);
+
+        assertThat(wheel.cancel("tx-1")).isTrue();
+        assertThat(wheel.cancel("tx-2")).isTrue();
+        assertThat(wheel.cancel("tx-2")).isFalse();
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.advanceTo(WHEEL_SIZE * WHEEL_SIZE * TICK_MS * 2)).isEmpty();
+    }
+
+    @Test
+    void shouldReplaceTimerScheduledUnderSameKey() {
+        HierarchicalTimerWheel<String, String> wheel = new HierarchicalTimerWheel<>(TICK_MS, WHEEL_SIZE, 0);
+        wheel.schedule("tx-1", "first", 50);
+        wheel.schedule("tx-1", "second", 200);
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advanceTo(190)).isEmpty();
+        assertThat(wheel.advanceTo(200)).containsExactly("second");
+    }
+
+    @Test
+    void shouldFirePastDeadlineOnNextTick() {
+        HierarchicalTimerWheel<String, String> wheel = new HierarchicalTimerWheel<>(TICK_MS, WHEEL_SIZE, 1000);
+        wheel.schedule("tx-1", "tx-1", 0);
+        wheel.schedule("tx-2", "tx-2", 1000);
+
+        assertThat(wheel.advanceTo(1000)).isEmpty();
+        assertThat(wheel.advanceTo(1010)).containsExactlyInAnyOrder("tx-1", "tx-2");
+    }
+}